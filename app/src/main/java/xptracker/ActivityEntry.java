@@ -0,0 +1,18 @@
+// ActivityEntry
+package xptracker;
+
+//                                                                                         Data Model (one log entry) 
+// Represents a single activity session that was recorded by the user.
+class ActivityEntry {
+    String date;     // date string like "2025-09-04"
+    String category; // STUDY, CODING, WORKOUT, or WRITING
+    int minutes;     // minutes logged for this entry (validated 1-300 per chunk)
+    int xp;          // computed XP for this entry: minutes * category multiplier
+    String user;     // which user this entry belongs to (from the startup username prompt)
+    ActivityEntry(String date, String category, int minutes, int xp, String user) {
+        this.date = date; this.category = category; this.minutes = minutes; this.xp = xp; this.user = user;
+    }
+    String toCSV() { return date + "," + category + "," + minutes + "," + xp; } // saved line format
+
+    static final int MAX_MINUTES = 300;  // one saved entry is at most this long; longer stretches are split
+}
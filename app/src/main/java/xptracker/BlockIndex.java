@@ -0,0 +1,91 @@
+// BlockIndex
+package xptracker;
+
+import java.util.Arrays;
+
+//                                          Block index: where each session (text) or block (.xpb) starts and which days it covers
+// Kept next to the per-user totals. A user's posting list says which blocks hold their entries; this says where
+// each block's byte range ends (the next block's start) and the span of entry days inside it, so a query reads
+// and, for compressed .xpb blocks, inflates only the blocks it needs.
+class BlockIndex {
+    private long[] offset = new long[0];                          // block start, ascending
+    private int[] firstDay = new int[0], lastDay = new int[0];   // earliest/latest entry day (NO_DATE counts as earliest)
+    private int count = 0;
+
+    int size() { return count; }
+    long offset(int i) { return offset[i]; }
+    int firstDay(int i) { return firstDay[i]; }
+    int lastDay(int i) { return lastDay[i]; }
+    void clear() { count = 0; }
+
+    // A block starts at 'at' (repeat calls for the same block, e.g. one per .xpb user, are ignored).
+    void start(long at) {
+        if (count > 0 && offset[count - 1] == at) return;
+        if (count == offset.length) {
+            int n = Math.max(64, 2 * count);
+            offset = Arrays.copyOf(offset, n); firstDay = Arrays.copyOf(firstDay, n); lastDay = Arrays.copyOf(lastDay, n);
+        }
+        offset[count] = at;
+        firstDay[count] = Integer.MAX_VALUE; // no entries yet
+        lastDay[count] = Integer.MIN_VALUE;
+        count++;
+    }
+
+    // An entry of the current block.
+    void day(int epochDay) {
+        if (count == 0) return;
+        if (epochDay < firstDay[count - 1]) firstDay[count - 1] = epochDay;
+        if (epochDay > lastDay[count - 1]) lastDay[count - 1] = epochDay;
+    }
+
+    // Index of the block starting at 'at', or -1.
+    int find(long at) {
+        int i = Arrays.binarySearch(offset, 0, count, at);
+        return (i >= 0) ? i : -1;
+    }
+
+    // Blocks parsed after ours (parallel ranges are merged in log order).
+    void append(BlockIndex later) {
+        append(later, false);
+    }
+
+    // Same; with 'continues' later's first block is the rest of our last one (a read resumed mid-session),
+    // so its days widen that block instead of starting a new one.
+    void append(BlockIndex later, boolean continues) {
+        int from = 0;
+        if (continues && later.count > 0) {
+            from = 1;
+            if (later.firstDay[0] <= later.lastDay[0]) { day(later.firstDay[0]); day(later.lastDay[0]); }
+        }
+        for (int i = from; i < later.count; i++) {
+            start(later.offset[i]);
+            firstDay[count - 1] = later.firstDay[i];
+            lastDay[count - 1] = later.lastDay[i];
+        }
+    }
+
+    // Three tab-separated base-36 lists: delta-coded offsets, first days, last days.
+    String encode() {
+        StringBuilder o = new StringBuilder(), f = new StringBuilder(), l = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            if (i > 0) { o.append(','); f.append(','); l.append(','); }
+            o.append(Long.toString(offset[i] - (i > 0 ? offset[i - 1] : 0), 36));
+            f.append(Integer.toString(firstDay[i], 36));
+            l.append(Integer.toString(lastDay[i], 36));
+        }
+        return o + "\t" + f + "\t" + l;
+    }
+
+    void decode(String offsets, String firsts, String lasts) {
+        clear();
+        if (offsets.isEmpty()) return;
+        String[] o = offsets.split(","), f = firsts.split(","), l = lasts.split(",");
+        if (o.length != f.length || o.length != l.length) throw new IllegalArgumentException("block index lists differ in length");
+        long at = 0;
+        for (int i = 0; i < o.length; i++) {
+            start(at += Long.parseLong(o[i], 36));
+            firstDay[count - 1] = Integer.parseInt(f[i], 36);
+            lastDay[count - 1] = Integer.parseInt(l[i], 36);
+        }
+    }
+}
@@ -0,0 +1,432 @@
+// BulkImport
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+//                                                     Bulk import: activity exported from other trackers (CSV or JSON)
+// Rows become saved entries exactly as if they had been logged here: categories mapped onto ours, XP from the
+// default multipliers, anything over 300 minutes split into 300-minute entries the way addMinutesFromTimer does.
+// Entries the history already has (same user, day, category and minutes, counted per occurrence) are dropped, so
+// importing the same export twice adds nothing. The rest is appended as one session per user and day, in large
+// batched writes under the usual append lock; the input is parsed in ~8 MB ranges on all cores first.
+//
+// CSV: a header row names the columns (user, date, category, and minutes, hours or seconds); fields may be quoted
+// but can't span lines. JSON: an array of flat objects, or one object per line, with the same keys. Dates are
+// yyyy-mm-dd, optionally followed by a time. Without a user column every row belongs to the default user.
+class BulkImport {
+    static final int CHUNK_BYTES = 8 << 20;        // input bytes per parse task
+    static final int WRITE_ENTRIES = 1 << 16;      // entries per append
+    private static final int MAX_PROBLEMS = 20;    // rejected rows reported by byte offset; the rest are only counted
+    private static final long MAX_ROW_MINUTES = 1_000_000; // ~2 years in one row is a broken export, not a session
+    private static final int USER = 0, DATE = 1, CATEGORY = 2, MINUTES = 3, HOURS = 4, SECONDS = 5, FIELDS = 6;
+
+    static final class Result {
+        long rows, entries, duplicates, imported, sessions, rejected;
+        final List<String> problems = new ArrayList<>();
+    }
+
+    private final String defaultUser;                                // null = rows must name their user
+    private final Map<String,String> categories = new HashMap<>();  // lower-case name in the export -> ours
+
+    // 'map' adds export names for our categories, e.g. running -> WORKOUT (ours are always recognized).
+    BulkImport(String defaultUser, Map<String,String> map) {
+        this.defaultUser = (defaultUser == null || defaultUser.trim().isEmpty()) ? null : defaultUser.trim();
+        String badName = (this.defaultUser == null) ? null : LogWriter.userNameProblem(this.defaultUser);
+        if (badName != null) throw new IllegalArgumentException(badName + ": " + this.defaultUser);
+        for (String c : Categories.DEFAULT_MULTIPLIERS.keySet()) categories.put(c.toLowerCase(Locale.ROOT), c);
+        for (Map.Entry<String,String> m : map.entrySet()) {
+            String ours = m.getValue().trim().toUpperCase(Locale.ROOT);
+            if (!Categories.DEFAULT_MULTIPLIERS.containsKey(ours)) throw new IllegalArgumentException("no category " + m.getValue());
+            categories.put(m.getKey().trim().toLowerCase(Locale.ROOT), ours);
+        }
+    }
+
+    // Parse, dedupe and (unless dryRun) append everything in 'input'.
+    Result run(File input, boolean dryRun) throws IOException {
+        List<Parsed> parts;
+        try (FileChannel ch = FileChannel.open(input.toPath(), StandardOpenOption.READ)) {
+            byte[] head = read(ch, 0, Math.min(ch.size(), 4096));
+            int bom = (head.length >= 3 && head[0] == (byte) 0xEF && head[1] == (byte) 0xBB && head[2] == (byte) 0xBF) ? 3 : 0;
+            List<long[]> ranges;
+            String header = null;
+            if (isJson(head, bom)) {
+                ranges = jsonRanges(ch, bom);
+            } else {
+                long end = nextLine(ch, 0);
+                header = new String(read(ch, bom, end), StandardCharsets.UTF_8).trim();
+                ranges = lineRanges(ch, end);
+            }
+            final char delimiter = (header == null) ? ',' : delimiter(header);
+            final String[] columns = (header == null) ? null : splitCsv(header, delimiter);
+            if (columns != null && Arrays.stream(columns).allMatch(c -> role(c) < 0)) {
+                throw new IOException("no user, date, category or duration column in the CSV header: " + header);
+            }
+            Stream<long[]> tasks = ParallelLogLoader.worthIt(ch.size()) ? ranges.parallelStream() : ranges.stream();
+            parts = tasks.map(r -> {
+                try {
+                    Parsed p = new Parsed();
+                    byte[] bytes = read(ch, r[0], r[1]);
+                    if (columns == null) p.json(bytes, r[0]); else p.csv(bytes, r[0], columns, delimiter);
+                    return p;
+                } catch (IOException ex) {
+                    throw new UncheckedIOException(ex);
+                }
+            }).collect(Collectors.toList());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+
+        Result res = new Result();
+        Map<String,List<ActivityEntry>> byUser = new LinkedHashMap<>(); // user key -> entries, in input order
+        for (Parsed p : parts) {
+            res.rows += p.rows;
+            res.rejected += p.rejected;
+            for (String problem : p.problems) if (res.problems.size() < MAX_PROBLEMS) res.problems.add(problem);
+            for (ActivityEntry e : p.entries) byUser.computeIfAbsent(HistoryIndex.userKey(e.user), k -> new ArrayList<>()).add(e);
+            res.entries += p.entries.size();
+        }
+
+        List<LogWriter.Batch> sessions = new ArrayList<>();
+        HistoryIndex shared = null;
+        for (List<ActivityEntry> entries : byUser.values()) {
+            String user = entries.get(0).user;
+            File log = DataFiles.log(user);
+            HistoryIndex idx = shared;
+            if (idx == null) {
+                idx = HistoryIndex.refresh(HistoryIndex.load(DataFiles.index(user)), log, DataFiles.index(user));
+                if (!DataFiles.SHARDED) shared = idx; // one shared log: one index for everybody
+            }
+            Map<String,List<ActivityEntry>> fresh = withoutSaved(idx, log, user, entries);
+            // One session per day, oldest first (the block index can then skip them by date).
+            List<String> days = new ArrayList<>(fresh.keySet());
+            days.sort(null);
+            for (String day : days) {
+                List<ActivityEntry> session = fresh.get(day);
+                sessions.add(new LogWriter.Batch(log, user, session));
+                res.imported += session.size();
+            }
+        }
+        res.duplicates = res.entries - res.imported;
+        res.sessions = sessions.size();
+        if (dryRun || sessions.isEmpty()) return res;
+
+        // Shared log: day by day across users, so it stays in date order; shards: one user's file at a time.
+        sessions.sort((a, b) -> {
+            int c = DataFiles.SHARDED ? a.file.compareTo(b.file) : a.entries.get(0).date.compareTo(b.entries.get(0).date);
+            return (c != 0) ? c : a.entries.get(0).date.compareTo(b.entries.get(0).date);
+        });
+        boolean fsync = Boolean.getBoolean("xptracker.log.fsync"), compress = Boolean.getBoolean("xptracker.compress");
+        List<LogWriter.Batch> group = new ArrayList<>();
+        int pending = 0;
+        for (LogWriter.Batch b : sessions) {
+            if (!group.isEmpty() && (pending >= WRITE_ENTRIES || !b.file.equals(group.get(0).file))) {
+                LogWriter.append(group, DataFiles.BINARY, DataFiles.SHARDED, fsync, compress);
+                group.clear();
+                pending = 0;
+            }
+            group.add(b);
+            pending += b.entries.size();
+        }
+        LogWriter.append(group, DataFiles.BINARY, DataFiles.SHARDED, fsync, compress);
+
+        // Bring the indexes up to date now, so the next start or query doesn't have to.
+        if (DataFiles.SHARDED) {
+            for (List<ActivityEntry> entries : byUser.values()) {
+                String user = entries.get(0).user;
+                HistoryIndex.refresh(HistoryIndex.load(DataFiles.index(user)), DataFiles.log(user), DataFiles.index(user));
+            }
+        } else {
+            HistoryIndex.refresh(shared, DataFiles.file(DataFiles.LOG_NAME), DataFiles.file(DataFiles.INDEX_NAME));
+        }
+        return res;
+    }
+
+    // The entries of 'entries' the user's saved history doesn't have yet, by date. Saved entries are matched one
+    // for one (two identical saved entries cancel two identical imported ones), only within the import's date span.
+    private static Map<String,List<ActivityEntry>> withoutSaved(HistoryIndex idx, File log, String user, List<ActivityEntry> entries) throws IOException {
+        int from = Integer.MAX_VALUE, to = Integer.MIN_VALUE;
+        long[] keys = new long[entries.size()];
+        Map<String,Integer> epochDays = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            ActivityEntry e = entries.get(i);
+            int day = epochDays.computeIfAbsent(e.date, MappedLogParser::epochDay);
+            keys[i] = key(day, Categories.id(e.category), e.minutes);
+            from = Math.min(from, day);
+            to = Math.max(to, day);
+        }
+        Map<Long,Integer> saved = new HashMap<>();
+        try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, log, user, from, to)) {
+            records.forEach(r -> saved.merge(key(r.epochDay, r.categoryId, r.minutes), 1, Integer::sum));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        Map<String,List<ActivityEntry>> fresh = new HashMap<>();
+        for (int i = 0; i < keys.length; i++) {
+            Integer n = saved.isEmpty() ? null : saved.get(keys[i]);
+            if (n == null) fresh.computeIfAbsent(entries.get(i).date, d -> new ArrayList<>()).add(entries.get(i));
+            else if (n == 1) saved.remove(keys[i]);
+            else saved.put(keys[i], n - 1);
+        }
+        return fresh;
+    }
+
+    private static long key(int day, int categoryId, int minutes) {
+        return ((long) day << 32) | ((long) categoryId << 24) | (minutes & 0xFFFFFFL);
+    }
+
+    //                                                                 Splitting the input into parse ranges
+    private static boolean isJson(byte[] head, int from) {
+        for (int i = from; i < head.length; i++) {
+            if (head[i] == '[' || head[i] == '{') return true;
+            if (head[i] > ' ') return false;
+        }
+        return false;
+    }
+
+    // ~CHUNK_BYTES ranges from 'from' to the end, each ending just after a newline.
+    private static List<long[]> lineRanges(FileChannel ch, long from) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        long size = ch.size();
+        while (from < size) {
+            long to = (size - from <= CHUNK_BYTES) ? size : nextLine(ch, from + CHUNK_BYTES);
+            ranges.add(new long[] { from, to });
+            from = to;
+        }
+        return ranges;
+    }
+
+    // Offset just past the first '\n' at or after 'at' (or the end of the file).
+    private static long nextLine(FileChannel ch, long at) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        for (long pos = at; ; pos += buf.limit()) {
+            buf.clear();
+            if (ch.read(buf, pos) <= 0) return ch.size();
+            buf.flip();
+            for (int i = 0; i < buf.limit(); i++) if (buf.get(i) == '\n') return pos + i + 1;
+        }
+    }
+
+    // ~CHUNK_BYTES ranges of whole top-level objects (found with one pass that only tracks strings and nesting).
+    private static List<long[]> jsonRanges(FileChannel ch, long from) throws IOException {
+        List<long[]> ranges = new ArrayList<>();
+        ByteBuffer buf = ByteBuffer.allocate(1 << 20);
+        int depth = 0, base = -1;       // base: nesting depth of the objects ('[' around them or not)
+        boolean inString = false, escaped = false;
+        long start = from, pos = from;
+        while (true) {
+            buf.clear();
+            int n = ch.read(buf, pos);
+            if (n <= 0) break;
+            for (int i = 0; i < n; i++) {
+                byte b = buf.get(i);
+                if (inString) {
+                    if (escaped) escaped = false;
+                    else if (b == '\\') escaped = true;
+                    else if (b == '"') inString = false;
+                } else if (b == '"') {
+                    inString = true;
+                } else if (b == '{' || b == '[') {
+                    if (base < 0) base = (b == '[') ? 1 : 0;
+                    depth++;
+                } else if (b == '}' || b == ']') {
+                    depth--;
+                    if (b == '}' && depth == base && pos + i + 1 - start >= CHUNK_BYTES) {
+                        ranges.add(new long[] { start, pos + i + 1 });
+                        start = pos + i + 1;
+                    }
+                }
+            }
+            pos += n;
+        }
+        if (start < pos) ranges.add(new long[] { start, pos });
+        return ranges;
+    }
+
+    private static byte[] read(FileChannel ch, long from, long to) throws IOException {
+        if (to - from > Integer.MAX_VALUE - 8) throw new IOException("input line or object too long at byte " + from);
+        ByteBuffer buf = ByteBuffer.allocate((int) (to - from));
+        while (buf.hasRemaining() && ch.read(buf, from + buf.position()) >= 0) {
+            // keep reading
+        }
+        return buf.array();
+    }
+
+    //                                                                 Parsing rows (one Parsed per range, on a worker thread)
+    static int role(String column) {
+        switch (column.trim().toLowerCase(Locale.ROOT)) {
+            case "user": case "username": case "user_name": case "name": return USER;
+            case "date": case "day": case "start": case "started": case "start_time": case "timestamp": return DATE;
+            case "category": case "activity": case "type": case "project": return CATEGORY;
+            case "minutes": case "mins": case "duration": case "duration_minutes": return MINUTES;
+            case "hours": case "duration_hours": return HOURS;
+            case "seconds": case "duration_seconds": return SECONDS;
+            default: return -1;
+        }
+    }
+
+    private static char delimiter(String header) {
+        char best = ',';
+        int most = count(header, ',');
+        if (count(header, ';') > most) { best = ';'; most = count(header, ';'); }
+        if (count(header, '\t') > most) best = '\t';
+        return best;
+    }
+
+    private static int count(String s, char c) {
+        int n = 0;
+        for (int i = 0; i < s.length(); i++) if (s.charAt(i) == c) n++;
+        return n;
+    }
+
+    // Fields of one CSV line; "quoted" fields may hold the delimiter and "" for a quote.
+    private static String[] splitCsv(String line, char delimiter) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder f = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c != '"') f.append(c);
+                else if (i + 1 < line.length() && line.charAt(i + 1) == '"') { f.append('"'); i++; }
+                else quoted = false;
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == delimiter) {
+                fields.add(f.toString());
+                f.setLength(0);
+            } else {
+                f.append(c);
+            }
+        }
+        fields.add(f.toString());
+        return fields.toArray(new String[0]);
+    }
+
+    private final class Parsed {
+        final List<ActivityEntry> entries = new ArrayList<>();
+        final List<String> problems = new ArrayList<>();
+        long rows, rejected;
+        private final Map<String,String> dates = new HashMap<>();  // raw date -> yyyy-mm-dd ("" if unreadable)
+        private final Map<String,String> users = new HashMap<>();  // one String per user name
+        private final Map<String,String> mapped = new HashMap<>(); // raw category -> ours ("" if unknown)
+
+        void csv(byte[] bytes, long offset, String[] columns, char delimiter) {
+            int[] roles = new int[columns.length];
+            for (int i = 0; i < columns.length; i++) roles[i] = role(columns[i]);
+            String[] row = new String[FIELDS];
+            for (int start = 0; start < bytes.length; ) {
+                int end = start;
+                while (end < bytes.length && bytes[end] != '\n') end++;
+                int last = end;
+                while (last > start && (bytes[last - 1] == '\r' || bytes[last - 1] == ' ')) last--;
+                if (last > start) {
+                    Arrays.fill(row, null);
+                    // Fields straight from the bytes; only the ones we use become Strings.
+                    int column = 0;
+                    for (int f = start; f <= last && column < roles.length; column++) {
+                        int e = f;
+                        boolean quoted = false;
+                        while (e < last && (quoted || bytes[e] != delimiter)) {
+                            if (bytes[e] == '"') quoted = !quoted;
+                            e++;
+                        }
+                        if (roles[column] >= 0) row[roles[column]] = field(bytes, f, e);
+                        f = e + 1;
+                    }
+                    add(row, offset + start);
+                }
+                start = end + 1;
+            }
+        }
+
+        // One field's text, "quoted" or not.
+        private String field(byte[] bytes, int from, int to) {
+            if (to - from >= 2 && bytes[from] == '"' && bytes[to - 1] == '"') {
+                return new String(bytes, from + 1, to - from - 2, StandardCharsets.UTF_8).replace("\"\"", "\"");
+            }
+            return new String(bytes, from, to - from, StandardCharsets.UTF_8);
+        }
+
+        void json(byte[] bytes, long offset) throws IOException {
+            JsonReader in = new JsonReader(bytes, offset);
+            String[] row = new String[FIELDS];
+            while (in.skipToObject()) {
+                long at = in.offset();
+                Arrays.fill(row, null);
+                in.object(row);
+                add(row, at);
+            }
+        }
+
+        // One row: checked, mapped, and split into entries of at most MAX_MINUTES.
+        private void add(String[] row, long at) {
+            rows++;
+            String user = (row[USER] == null || row[USER].trim().isEmpty()) ? defaultUser : users.computeIfAbsent(row[USER].trim(), u -> u);
+            String date = (row[DATE] == null) ? "" : dates.computeIfAbsent(row[DATE], BulkImport::isoDate);
+            String category = (row[CATEGORY] == null) ? ""
+                    : mapped.computeIfAbsent(row[CATEGORY], c -> categories.getOrDefault(c.trim().toLowerCase(Locale.ROOT), ""));
+            long minutes = minutes(row);
+            String badName = (user == null) ? null : LogWriter.userNameProblem(user);
+            String problem = (user == null) ? "no user"
+                    : (badName != null) ? badName
+                    : (row[DATE] == null) ? "no date"
+                    : (row[CATEGORY] == null) ? "no category"
+                    : date.isEmpty() ? "unreadable date '" + row[DATE] + "'"
+                    : category.isEmpty() ? "unknown category '" + row[CATEGORY] + "'"
+                    : (minutes < 1 || minutes > MAX_ROW_MINUTES) ? "unusable duration"
+                    : null;
+            if (problem != null) {
+                rejected++;
+                if (problems.size() < MAX_PROBLEMS) problems.add("byte " + at + ": " + problem);
+                return;
+            }
+            int multiplier = Categories.DEFAULT_MULTIPLIERS.get(category);
+            for (long left = minutes; left > 0; ) {
+                int chunk = (int) Math.min(left, ActivityEntry.MAX_MINUTES); // same chunking as addMinutesFromTimer
+                entries.add(new ActivityEntry(date, category, chunk, chunk * multiplier, user));
+                left -= chunk;
+            }
+        }
+    }
+
+    // Whole minutes of a row (minutes, else hours, else seconds), or -1.
+    private static long minutes(String[] row) {
+        String m = row[MINUTES];
+        if (m != null && !m.isEmpty() && m.length() <= 9 && m.chars().allMatch(c -> c >= '0' && c <= '9')) return Integer.parseInt(m);
+        try {
+            if (row[MINUTES] != null && !row[MINUTES].trim().isEmpty()) return Math.round(Double.parseDouble(row[MINUTES].trim()));
+            if (row[HOURS] != null && !row[HOURS].trim().isEmpty()) return Math.round(Double.parseDouble(row[HOURS].trim()) * 60);
+            if (row[SECONDS] != null && !row[SECONDS].trim().isEmpty()) return Math.round(Double.parseDouble(row[SECONDS].trim()) / 60);
+        } catch (NumberFormatException ex) {
+            // falls through
+        }
+        return -1;
+    }
+
+    // "2024-05-01", "2024-05-01T07:30:00Z" or "2024-05-01 07:30" -> "2024-05-01"; "" if it isn't a date.
+    private static String isoDate(String raw) {
+        String s = raw.trim();
+        try {
+            return LocalDate.parse(s.length() > 10 ? s.substring(0, 10) : s).toString();
+        } catch (DateTimeParseException ex) {
+            return "";
+        }
+    }
+}
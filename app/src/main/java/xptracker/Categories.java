@@ -0,0 +1,87 @@
+// Categories
+package xptracker;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//                                                                           Category ids (interned once, so records carry a small int instead of a String)
+final class Categories {
+    private static final Charset CS = Charset.defaultCharset();
+    private static volatile String[] names = { "STUDY", "CODING", "WORKOUT", "WRITING" };
+    private static volatile byte[][] encoded = encodeAll(names);
+
+    private static byte[][] encodeAll(String[] n) {
+        byte[][] b = new byte[n.length][];
+        for (int i = 0; i < n.length; i++) b[i] = n[i].getBytes(CS);
+        return b;
+    }
+
+    // XP per minute for the built-in categories (the window's starting multipliers, and what imports use).
+    static final Map<String,Integer> DEFAULT_MULTIPLIERS = defaultMultipliers();
+
+    private static Map<String,Integer> defaultMultipliers() {
+        Map<String,Integer> m = new LinkedHashMap<>();
+        m.put("STUDY", 5);
+        m.put("CODING", 6);
+        m.put("WORKOUT", 8);
+        m.put("WRITING", 4);
+        return Collections.unmodifiableMap(m);
+    }
+
+    static int count() { return names.length; }
+    static String name(int id) { return names[id]; }
+
+    // sums[id] += v, growing the array if the category was registered after it was allocated.
+    static long[] add(long[] sums, int id, long v) {
+        if (id >= sums.length) sums = Arrays.copyOf(sums, Math.max(id + 1, names.length));
+        sums[id] += v;
+        return sums;
+    }
+
+    // One "  NAME     : xp" line per category with XP, in id order. Returns false if there were none.
+    static boolean appendLines(StringBuilder sb, long[] sums) {
+        boolean any = false;
+        for (int id = 0; id < sums.length; id++) {
+            if (sums[id] == 0) continue;
+            sb.append(String.format("  %-8s : %d%n", name(id), sums[id]));
+            any = true;
+        }
+        return any;
+    }
+
+    static int id(String name) {
+        String[] n = names;
+        for (int i = 0; i < n.length; i++) if (n[i].equals(name)) return i;
+        return register(name);
+    }
+
+    // Look up the category spelled by buf[from, to) without building a String (only a new category allocates).
+    static int intern(ByteBuffer buf, int from, int to) {
+        byte[][] enc = encoded;
+        int len = to - from;
+        outer:
+        for (int i = 0; i < enc.length; i++) {
+            byte[] c = enc[i];
+            if (c.length != len) continue;
+            for (int j = 0; j < len; j++) if (buf.get(from + j) != c[j]) continue outer;
+            return i;
+        }
+        byte[] raw = new byte[len];
+        for (int j = 0; j < len; j++) raw[j] = buf.get(from + j);
+        return register(new String(raw, CS));
+    }
+
+    private static synchronized int register(String name) {
+        String[] n = names;
+        for (int i = 0; i < n.length; i++) if (n[i].equals(name)) return i; // raced with another thread
+        String[] grown = Arrays.copyOf(n, n.length + 1);
+        grown[n.length] = name;
+        names = grown;                  // first: an id found through 'encoded' must already have its name
+        encoded = encodeAll(grown);
+        return n.length;
+    }
+}
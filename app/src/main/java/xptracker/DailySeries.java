@@ -0,0 +1,99 @@
+// DailySeries
+package xptracker;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+//                                                                  Per-day minutes and XP by category for one user (time-series store)
+// Weekly/monthly/yearly totals, charts and streaks read from here in O(days) instead of going through raw entries.
+// Each day holds {minutes, xp} pairs indexed by category id. Undated entries (NO_DATE) are not part of it.
+class DailySeries {
+    private final TreeMap<Integer,long[]> days = new TreeMap<>();
+
+    void add(int epochDay, int categoryId, long minutes, long xp) {
+        if (epochDay == MappedLogParser.NO_DATE) return;
+        long[] d = days.get(epochDay);
+        if (d == null || 2 * categoryId + 1 >= d.length) {
+            d = (d == null) ? new long[2 * Math.max(categoryId + 1, Categories.count())] : Arrays.copyOf(d, 2 * (categoryId + 1));
+            days.put(epochDay, d);
+        }
+        d[2 * categoryId] += minutes;
+        d[2 * categoryId + 1] += xp;
+    }
+    void add(ActivityEntry e) {
+        add(MappedLogParser.epochDay(e.date), Categories.id(e.category), e.minutes, e.xp);
+    }
+    void addAll(DailySeries o) {
+        for (Map.Entry<Integer,long[]> d : o.days.entrySet()) {
+            long[] v = d.getValue();
+            for (int c = 0; 2 * c < v.length; c++) if (v[2 * c] != 0 || v[2 * c + 1] != 0) add(d.getKey(), c, v[2 * c], v[2 * c + 1]);
+        }
+    }
+    DailySeries copy() {
+        DailySeries c = new DailySeries();
+        for (Map.Entry<Integer,long[]> d : days.entrySet()) c.days.put(d.getKey(), d.getValue().clone());
+        return c;
+    }
+
+    // {minutes, xp} pairs per category id summed over fromDay..toDay (inclusive).
+    long[] sum(int fromDay, int toDay) {
+        long[] out = new long[2 * Categories.count()];
+        if (fromDay > toDay) return out;
+        for (long[] d : days.subMap(fromDay, true, toDay, true).values()) {
+            if (d.length > out.length) out = Arrays.copyOf(out, d.length);
+            for (int i = 0; i < d.length; i++) out[i] += d[i];
+        }
+        return out;
+    }
+
+    static long minutes(long[] sums) { long m = 0; for (int i = 0; i < sums.length; i += 2) m += sums[i]; return m; }
+    static long xp(long[] sums) { long x = 0; for (int i = 1; i < sums.length; i += 2) x += sums[i]; return x; }
+
+    // {current, longest} runs of consecutive days with entries. The current run still counts if it ended
+    // yesterday (today just has nothing yet).
+    int[] streaks(int today) {
+        int longest = 0, run = 0, prev = Integer.MIN_VALUE;
+        for (int day : days.keySet()) {
+            run = (prev != Integer.MIN_VALUE && day == prev + 1) ? run + 1 : 1;
+            longest = Math.max(longest, run);
+            prev = day;
+        }
+        int current = (prev == today || prev == today - 1) ? run : 0;
+        return new int[] { current, longest };
+    }
+
+    // Index field: "day:CAT=minutes/xp,CAT=...;day:..." with base-36 numbers.
+    String encode() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<Integer,long[]> d : days.entrySet()) {
+            if (sb.length() > 0) sb.append(';');
+            sb.append(Integer.toString(d.getKey(), 36)).append(':');
+            long[] v = d.getValue();
+            boolean first = true;
+            for (int c = 0; 2 * c < v.length; c++) {
+                if (v[2 * c] == 0 && v[2 * c + 1] == 0) continue;
+                if (!first) sb.append(',');
+                first = false;
+                sb.append(Categories.name(c)).append('=').append(Long.toString(v[2 * c], 36)).append('/').append(Long.toString(v[2 * c + 1], 36));
+            }
+        }
+        return sb.toString();
+    }
+
+    static DailySeries decode(String s) {
+        DailySeries d = new DailySeries();
+        if (s.isEmpty()) return d;
+        for (String day : s.split(";")) {
+            int colon = day.indexOf(':');
+            int epochDay = Integer.parseInt(day.substring(0, colon), 36);
+            for (String cat : day.substring(colon + 1).split(",")) {
+                int eq = cat.lastIndexOf('='), slash = cat.lastIndexOf('/');
+                if (eq <= 0 || slash < eq) continue;
+                d.add(epochDay, Categories.id(cat.substring(0, eq)),
+                        Long.parseLong(cat.substring(eq + 1, slash), 36), Long.parseLong(cat.substring(slash + 1), 36));
+            }
+        }
+        return d;
+    }
+}
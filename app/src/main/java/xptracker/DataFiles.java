@@ -0,0 +1,31 @@
+// DataFiles
+package xptracker;
+
+import java.io.File;
+
+//                                                                 Where the data files are (kept apart from the window so headless code can use it)
+final class DataFiles {
+    // -Dxptracker.home=<dir> keeps every data file below that directory instead of the working directory.
+    private static final File HOME = (System.getProperty("xptracker.home") == null) ? null : new File(System.getProperty("xptracker.home"));
+    // -Dxptracker.format=xpb saves to the binary columnar log instead of the CSV text log.
+    static final boolean BINARY = "xpb".equalsIgnoreCase(System.getProperty("xptracker.format", "text"));
+    static final String LOG_NAME = BINARY ? "xp_log.xpb" : "xp_log.txt";      // shared session log (all users)
+    static final String INDEX_NAME = BINARY ? "xp_log.xpb.idx" : "xp_log.idx"; // sidecar per-user totals for LOG_NAME
+    // -Dxptracker.storage=shards keeps one log per user under xp_logs/ (see ShardStore) instead of the shared LOG_NAME.
+    static final boolean SHARDED = "shards".equalsIgnoreCase(System.getProperty("xptracker.storage", "single"));
+    static final String SHARD_EXT = BINARY ? ".xpb" : ".txt";
+
+    static File file(String name) { return new File(HOME, name); }
+
+    // The log holding a user's sessions, and its sidecar index.
+    static File log(String user) {
+        return SHARDED ? ShardStore.shard(user, SHARD_EXT) : file(LOG_NAME);
+    }
+    static File index(String user) {
+        return SHARDED ? new File(log(user).getPath() + ".idx") : file(INDEX_NAME);
+    }
+
+    static File journal(String user) {
+        return file("xp_journal." + ShardStore.fileName(user) + ".wal");
+    }
+}
@@ -0,0 +1,313 @@
+// HistoryIndex
+package xptracker;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.StringReader;
+import java.io.UncheckedIOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+//                                                                   Sidecar index (xp_log.idx): per-user totals + how far into the log they cover
+// Lets startup skip re-parsing the whole shared log; only the tail past the checkpoint is read when the index is behind.
+// It is also the in-memory history model: the All-Time panel and the History tab are both served from it.
+class HistoryIndex implements LogTail.Sink {
+    private static final String MAGIC = "XPTracker index v7";
+    final LogTail tail = new LogTail();                   // checkpoint into xp_log.txt that 'users' covers
+    final Map<String,UserTotals> users = new HashMap<>(); // key = case-folded user name
+    final BlockIndex blocks = new BlockIndex();           // every session/block up to the checkpoint
+    final Set<String> tracked = new HashSet<>(); // keys whose daily series is kept (see daily())
+    boolean partial;                                      // loaded for one user only (see load(File, String, boolean))
+
+    // Case-insensitive key with the same semantics as String.equalsIgnoreCase (char by char).
+    static String userKey(String user) {
+        StringBuilder sb = new StringBuilder(user.length());
+        for (int i = 0; i < user.length(); i++) {
+            sb.append(Character.toLowerCase(Character.toUpperCase(user.charAt(i))));
+        }
+        return sb.toString();
+    }
+
+    UserTotals get(String user) {
+        UserTotals t = users.get(userKey(user));
+        return (t != null) ? t : new UserTotals();
+    }
+
+    private String lastUser;          // parser hands back the same String for consecutive sessions of a user,
+    private UserTotals lastTotals;    // so skip re-folding the key for every record
+
+    Consumer<HistoryIndex> onChunk;  // optional progress callback while catching up (may throw to abandon it)
+
+    @Override public void reset() { users.clear(); blocks.clear(); lastUser = null; lastTotals = null; }
+    @Override public void chunkDone(long offset) { if (onChunk != null) onChunk.accept(this); }
+    @Override public void session(String user, long offset) {
+        blocks.start(offset);
+        totals(user).addSession(offset);
+    }
+    @Override public void record(String user, int epochDay, int categoryId, int minutes, int xp) {
+        blocks.day(epochDay);
+        totals(user).add(epochDay, categoryId, minutes, xp);
+    }
+
+    private UserTotals totals(String user) {
+        if (user != lastUser) {
+            lastTotals = users.computeIfAbsent(userKey(user), k -> {
+                UserTotals t = new UserTotals();
+                if (tracked.contains(k)) t.daily = new DailySeries();
+                return t;
+            });
+            lastUser = user;
+        }
+        return lastTotals;
+    }
+
+    // Keep a daily series for this user from now on, building it from their sessions if there is none yet
+    // (first use, or a parallel catch-up dropped it). Returns true if the index changed and should be saved.
+    boolean track(File log, String user) throws IOException {
+        String key = userKey(user);
+        boolean added = tracked.add(key);
+        UserTotals t = users.get(key);
+        if (t == null || t.daily != null) return added;
+        t.daily = readDaily(log, user);
+        return true;
+    }
+
+    // A user's daily series built from their sessions (up to the checkpoint), without keeping it.
+    DailySeries readDaily(File log, String user) throws IOException {
+        UserTotals t = users.get(userKey(user));
+        if (t != null && t.daily != null) return t.daily.copy();
+        try (Stream<HistoryRecord> records = HistoryStream.ofUser(this, log, user)) {
+            return records.collect(HistoryStream.daily());
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+    }
+
+    // Read a saved index; a missing or unreadable one just means "start from byte 0".
+    static HistoryIndex load(File file) {
+        return load(file, null, true);
+    }
+
+    // Same, but only one user's totals: a quick read of a big index for a one-off question. Without 'withSessions'
+    // the block index and posting list are skipped too, so their saved sessions can't be read back from it.
+    // Such a partial index can be caught up but never saved.
+    static HistoryIndex load(File file, String onlyUser, boolean withSessions) {
+        HistoryIndex idx = new HistoryIndex();
+        idx.partial = onlyUser != null;
+        if (!file.exists()) return idx;
+        try (BufferedReader br = (onlyUser == null) ? new BufferedReader(new FileReader(file))
+                                                    : new BufferedReader(new StringReader(userLines(file, userKey(onlyUser), withSessions)))) {
+            if (!MAGIC.equals(br.readLine())) return new HistoryIndex();
+            String line;
+            while ((line = br.readLine()) != null) {
+                String[] p = line.split("\\t", -1);
+                if (p[0].equals("offset") && p.length == 2) {
+                    idx.tail.offset = Long.parseLong(p[1]);
+                } else if (p[0].equals("check") && p.length == 2) {
+                    idx.tail.check = Long.parseLong(p[1]);
+                } else if (p[0].equals("seen") && p.length == 3) {
+                    idx.tail.seenLength = Long.parseLong(p[1]);
+                    idx.tail.seenMtime = Long.parseLong(p[2]);
+                } else if (p[0].equals("blocks") && p.length == 4) {
+                    idx.blocks.decode(p[1], p[2], p[3]);
+                } else if (p[0].equals("skipped") && p.length == 2) {
+                    idx.tail.skipped = Long.parseLong(p[1]);
+                } else if (p[0].equals("last") && p.length == 2) {
+                    idx.tail.currentUser = p[1].isEmpty() ? null : p[1];
+                } else if (p[0].equals("sealed") && p.length == 2) {
+                    idx.tail.sealed = p[1].equals("1");
+                } else if (p[0].equals("user") && p.length == 6) {
+                    // user <entries> <totalXP> <CAT=xp;...> <day,min,xp,CAT;...> <key>   (key last so it may contain anything but a newline)
+                    UserTotals t = new UserTotals();
+                    for (String kv : p[3].split(";")) {
+                        int eq = kv.lastIndexOf('=');
+                        if (eq > 0) t.xpByCategory = Categories.add(t.xpByCategory, Categories.id(kv.substring(0, eq)), Long.parseLong(kv.substring(eq + 1)));
+                    }
+                    for (String r : p[4].split(";")) {
+                        String[] f = r.split(",", 4);
+                        if (f.length == 4) t.remember(Integer.parseInt(f[0]), Categories.id(f[3]), Integer.parseInt(f[1]), Integer.parseInt(f[2]));
+                    }
+                    t.entries = Integer.parseInt(p[1]);
+                    t.totalXP = Integer.parseInt(p[2]);
+                    idx.users.put(p[5], t);
+                } else if (p[0].equals("sessions") && p.length == 3) {
+                    // sessions <offsets> <key>   (after the user lines and the block index)
+                    UserTotals t = idx.users.get(p[2]);
+                    long at = 0;
+                    for (String d : p[1].split(",")) {
+                        if (t != null && !d.isEmpty()) t.addSession(at += Long.parseLong(d, 36));
+                    }
+                } else if (p[0].equals("days") && p.length == 3) {
+                    // days <series> <key>   (after the user lines)
+                    idx.tracked.add(p[2]);
+                    UserTotals t = idx.users.get(p[2]);
+                    if (t != null) t.daily = DailySeries.decode(p[1]);
+                }
+            }
+        } catch (IOException | RuntimeException ex) {
+            HistoryIndex fresh = new HistoryIndex(); // corrupt index: rebuild from the log
+            fresh.partial = idx.partial;
+            return fresh;
+        }
+        return idx;
+    }
+
+    // The lines of a saved index that matter for one user, picked out of the raw bytes: decoding everyone else's
+    // lines would cost more than the rest of a one-off query together (nothing is JIT-compiled that early).
+    private static String userLines(File file, String key, boolean withSessions) throws IOException {
+        Charset cs = Charset.defaultCharset();
+        byte[] suffix = ("\t" + key).getBytes(cs);
+        byte[] blocks = "blocks\t".getBytes(cs), user = "user\t".getBytes(cs), sessions = "sessions\t".getBytes(cs), days = "days\t".getBytes(cs);
+        StringBuilder out = new StringBuilder();
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] buf = new byte[1 << 16];
+            int start = 0, scan = 0, len = 0;  // current line starts at 'start'; no newline in [start, scan)
+            while (true) {
+                while (scan < len && buf[scan] != '\n') scan++;
+                if (scan == len) {
+                    if (start > 0) {
+                        System.arraycopy(buf, start, buf, 0, len - start);
+                        len -= start; scan -= start; start = 0;
+                    }
+                    if (len == buf.length) buf = Arrays.copyOf(buf, 2 * buf.length);
+                    int n = in.read(buf, len, buf.length - len);
+                    if (n < 0) break;
+                    len += n;
+                    continue;
+                }
+                int end = (scan > start && buf[scan - 1] == '\r') ? scan - 1 : scan;
+                if (!withSessions && startsWith(buf, start, end, blocks)) break; // only sessions and daily series follow
+                boolean perUser = startsWith(buf, start, end, user) || startsWith(buf, start, end, sessions) || startsWith(buf, start, end, days);
+                if (!perUser || endsWith(buf, start, end, suffix)) out.append(new String(buf, start, end - start, cs)).append('\n');
+                start = ++scan;
+            }
+        }
+        return out.toString();
+    }
+
+    private static boolean startsWith(byte[] buf, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) if (buf[from + i] != prefix[i]) return false;
+        return true;
+    }
+
+    private static boolean endsWith(byte[] buf, int from, int to, byte[] suffix) {
+        if (to - from < suffix.length) return false;
+        for (int i = 0; i < suffix.length; i++) if (buf[to - suffix.length + i] != suffix[i]) return false;
+        return true;
+    }
+
+    // Write via a temp file + rename so a crash never leaves a half-written index behind. The temp name is our own:
+    // a headless query may be saving the same index.
+    void save(File file) throws IOException {
+        if (partial) throw new IllegalStateException("partial index");
+        File tmp = File.createTempFile(file.getName() + ".", ".tmp", file.getAbsoluteFile().getParentFile());
+        boolean moved = false;
+        try {
+            try (PrintWriter out = new PrintWriter(new FileWriter(tmp))) {
+                out.println(MAGIC);
+                out.println("offset\t" + tail.offset);
+                out.println("check\t" + tail.check);
+                out.println("seen\t" + tail.seenLength + "\t" + tail.seenMtime);
+                out.println("skipped\t" + tail.skipped);
+                out.println("last\t" + (tail.currentUser == null ? "" : tail.currentUser));
+                out.println("sealed\t" + (tail.sealed ? "1" : "0"));
+                // Totals first: a one-user load stops at the block index and never reads the long lines below it.
+                for (Map.Entry<String,UserTotals> u : users.entrySet()) {
+                    UserTotals t = u.getValue();
+                    StringBuilder cats = new StringBuilder();
+                    for (int c = 0; c < t.xpByCategory.length; c++) {
+                        if (t.xpByCategory[c] == 0) continue;
+                        if (cats.length() > 0) cats.append(';');
+                        cats.append(Categories.name(c)).append('=').append(t.xpByCategory[c]);
+                    }
+                    StringBuilder recent = new StringBuilder();
+                    for (int i = 0, slot = (t.recentNext - t.recentCount + UserTotals.RECENT) % UserTotals.RECENT; i < t.recentCount;
+                         i++, slot = (slot + 1) % UserTotals.RECENT) {
+                        if (recent.length() > 0) recent.append(';');
+                        recent.append(t.recentDay[slot]).append(',').append(t.recentMin[slot]).append(',')
+                              .append(t.recentXp[slot]).append(',').append(Categories.name(t.recentCat[slot]));
+                    }
+                    out.println("user\t" + t.entries + "\t" + t.totalXP + "\t" + cats + "\t" + recent + "\t" + u.getKey());
+                }
+                out.println("blocks\t" + blocks.encode());
+                for (Map.Entry<String,UserTotals> u : users.entrySet()) {
+                    UserTotals t = u.getValue();
+                    StringBuilder postings = new StringBuilder();
+                    for (int i = 0; i < t.sessionCount; i++) {  // delta-coded, base 36
+                        if (i > 0) postings.append(',');
+                        postings.append(Long.toString(t.sessions[i] - (i > 0 ? t.sessions[i - 1] : 0), 36));
+                    }
+                    out.println("sessions\t" + postings + "\t" + u.getKey());
+                }
+                for (String key : tracked) {
+                    UserTotals t = users.get(key);
+                    if (t == null || t.daily != null) out.println("days\t" + (t == null ? "" : t.daily.encode()) + "\t" + key);
+                }
+                if (out.checkError()) throw new IOException("could not write " + tmp);
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+            moved = true;
+        } finally {
+            if (!moved) tmp.delete();
+        }
+    }
+
+    // Catch an index up with its log and persist it; returns the index to keep using.
+    static HistoryIndex refresh(HistoryIndex idx, File log, File indexFile) throws IOException {
+        try {
+            if (idx.catchUp(log)) idx.save(indexFile);
+            return idx;
+        } catch (IOException ex) {
+            // The index is only a cache; if it can't be written we just rebuild it next time.
+            HistoryIndex fresh = new HistoryIndex();
+            fresh.onChunk = idx.onChunk;
+            fresh.catchUp(log); // still failing means the log itself can't be read
+            return fresh;
+        }
+    }
+
+    // What onChunk sees while ranges are read in parallel: our totals plus those of the ranges finished so far.
+    // It shares UserTotals with both, so it is only good for reading during the callback.
+    private HistoryIndex withRanges(Map<String,UserTotals> done) {
+        HistoryIndex view = new HistoryIndex();
+        view.users.putAll(users);
+        for (Map.Entry<String,UserTotals> e : done.entrySet()) {
+            UserTotals ours = users.get(e.getKey());
+            view.users.put(e.getKey(), (ours == null) ? e.getValue() : ours.copy().merge(e.getValue()));
+        }
+        return view;
+    }
+
+    // Fold everything appended to the log since the checkpoint into the totals. Returns true if anything changed.
+    boolean catchUp(File log) throws IOException {
+        return tail.read(log, this, (ch, end) -> {
+            if (XpbLog.isXpb(ch)) {
+                XpbLog.scan(ch, end, tail, this);
+                return;
+            }
+            if (!ParallelLogLoader.worthIt(end - tail.offset)) {
+                MappedLogParser.parse(ch, end, tail, this);
+                return;
+            }
+            Map<String,UserTotals> parsed = ParallelLogLoader.aggregate(ch, end, tail, blocks,
+                    (onChunk == null) ? null : done -> onChunk.accept(withRanges(done)));
+            for (Map.Entry<String,UserTotals> e : parsed.entrySet()) users.merge(e.getKey(), e.getValue(), UserTotals::merge);
+            lastUser = null; lastTotals = null;
+        });
+    }
+}
@@ -0,0 +1,14 @@
+// HistoryRecord
+package xptracker;
+
+//                                                                        One saved entry as handed out by HistoryStream (ids, not Strings)
+final class HistoryRecord {
+    final String user;
+    final int epochDay, categoryId, minutes, xp;
+    HistoryRecord(String user, int epochDay, int categoryId, int minutes, int xp) {
+        this.user = user; this.epochDay = epochDay; this.categoryId = categoryId; this.minutes = minutes; this.xp = xp;
+    }
+    ActivityEntry toEntry() {
+        return new ActivityEntry(MappedLogParser.dateString(epochDay), Categories.name(categoryId), minutes, xp, user);
+    }
+}
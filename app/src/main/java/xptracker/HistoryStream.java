@@ -0,0 +1,249 @@
+// HistoryStream
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+//                                                       Saved history as a Stream (lazy, splits on session boundaries)
+// Nothing is materialized: records are parsed as the stream pulls them, so collecting per-user totals needs
+// memory for the totals only. Splits happen at "=== Session for" headers (text) or block starts (.xpb), so
+// .parallel() hands each thread whole sessions. Close the stream (try-with-resources) to close the file.
+final class HistoryStream {
+    private static final long MIN_SPLIT = 1L << 20;   // don't split byte ranges below this
+    static final long SLICE = 1L << 20;               // tryAdvance() parses this many bytes at a time
+    private static final int SESSION_BUFFER = 64 << 10;  // initial read buffer of a SessionSpliterator
+
+    private HistoryStream() {}
+
+    // Every record in the log, in log order.
+    static Stream<HistoryRecord> of(File log) throws IOException {
+        FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ);
+        try {
+            boolean xpb = XpbLog.isXpb(ch);
+            LogTail start = new LogTail();
+            start.offset = xpb ? XpbLog.MAGIC.length : 0;
+            return StreamSupport.stream(new RangeSpliterator(ch, xpb, start, ch.size()), false).onClose(() -> close(ch));
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    // One user's records up to the index checkpoint, read session by session via the posting list (everyone else's
+    // bytes are skipped). This is the one place that seeks through a user's sessions.
+    static Stream<HistoryRecord> ofUser(HistoryIndex idx, File log, String user) throws IOException {
+        return ofUser(idx, log, user, Integer.MIN_VALUE, Integer.MAX_VALUE);
+    }
+
+    // Same, dated fromDay..toDay only (epoch days, inclusive). A session whose day span in the block index misses the
+    // range is not read at all; records of the others are compared as ints. Each session is read only up to where
+    // the next block starts (or the checkpoint, for the last one).
+    static Stream<HistoryRecord> ofUser(HistoryIndex idx, File log, String user, int fromDay, int toDay) throws IOException {
+        UserTotals t = idx.users.get(HistoryIndex.userKey(user));
+        long[] sessions = (t == null) ? new long[0] : t.sessions();
+        long[] ends = new long[sessions.length];
+        int n = 0;
+        for (long at : sessions) {
+            int b = idx.blocks.find(at);
+            if (b >= 0 && (idx.blocks.lastDay(b) < fromDay || idx.blocks.firstDay(b) > toDay)) continue;
+            ends[n] = (b >= 0 && b + 1 < idx.blocks.size()) ? idx.blocks.offset(b + 1) : idx.tail.offset;
+            sessions[n++] = at;
+        }
+        if (n == 0) return Stream.empty();
+        FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ);
+        try {
+            SessionSpliterator s = new SessionSpliterator(ch, XpbLog.isXpb(ch), HistoryIndex.userKey(user),
+                    Arrays.copyOf(sessions, n), Arrays.copyOf(ends, n), 0, n);
+            Stream<HistoryRecord> out = StreamSupport.stream(s, false).onClose(() -> close(ch));
+            return (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) ? out
+                    : out.filter(r -> r.epochDay >= fromDay && r.epochDay <= toDay);
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+    }
+
+    // Totals of all records (combines in encounter order, so "most recent" stays right for parallel streams).
+    static Collector<HistoryRecord, ?, UserTotals> totals() {
+        return Collector.of(UserTotals::new, (t, r) -> t.add(r.epochDay, r.categoryId, r.minutes, r.xp), UserTotals::merge);
+    }
+
+    // Totals per case-folded user key, the same keys the index uses. Like HistoryIndex it only folds the key when
+    // the user String changes (records of one session share it).
+    static Collector<HistoryRecord, ?, Map<String,UserTotals>> totalsByUser() {
+        return Collector.of(ByUser::new, ByUser::add, ByUser::merge, b -> b.users);
+    }
+
+    private static final class ByUser {
+        final Map<String,UserTotals> users = new HashMap<>();
+        private String lastUser;
+        private UserTotals last;
+
+        void add(HistoryRecord r) {
+            if (r.user != lastUser) {
+                last = users.computeIfAbsent(HistoryIndex.userKey(r.user), k -> new UserTotals());
+                lastUser = r.user;
+            }
+            last.add(r.epochDay, r.categoryId, r.minutes, r.xp);
+        }
+
+        ByUser merge(ByUser later) {
+            for (Map.Entry<String,UserTotals> e : later.users.entrySet()) users.merge(e.getKey(), e.getValue(), UserTotals::merge);
+            lastUser = null;
+            return this;
+        }
+    }
+
+    static Collector<HistoryRecord, ?, DailySeries> daily() {
+        return Collector.of(DailySeries::new, (d, r) -> d.add(r.epochDay, r.categoryId, r.minutes, r.xp), (a, b) -> { a.addAll(b); return a; });
+    }
+
+    private static void close(FileChannel ch) {
+        try {
+            ch.close();
+        } catch (IOException ex) {
+            throw new UncheckedIOException(ex);
+        }
+    }
+
+    // A byte range of the log parsed with a LogTail, so the header user carries from one slice to the next.
+    private static final class RangeSpliterator implements Spliterator<HistoryRecord> {
+        private final FileChannel ch;
+        private final boolean xpb;
+        private final LogTail state;
+        private long end;
+        private final ArrayDeque<HistoryRecord> pending = new ArrayDeque<>();
+
+        RangeSpliterator(FileChannel ch, boolean xpb, LogTail state, long end) { this.ch = ch; this.xpb = xpb; this.state = state; this.end = end; }
+
+        @Override public boolean tryAdvance(Consumer<? super HistoryRecord> action) {
+            while (pending.isEmpty() && state.offset < end) {
+                long before = state.offset;
+                parse(sliceEnd(), pending::add);
+                if (state.offset == before) parse(end, pending::add); // one line longer than a slice
+                if (state.offset == before) break;                    // partial last line / block
+            }
+            HistoryRecord r = pending.poll();
+            if (r == null) return false;
+            action.accept(r);
+            return true;
+        }
+
+        @Override public void forEachRemaining(Consumer<? super HistoryRecord> action) {
+            for (HistoryRecord r; (r = pending.poll()) != null; ) action.accept(r);
+            parse(end, action);
+        }
+
+        private long sliceEnd() {
+            if (!xpb) return Math.min(end, state.offset + SLICE);
+            try {
+                long next = XpbLog.complete(ch, state.offset, end, false); // whole blocks only
+                return (next < 0) ? end : next;
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        private void parse(long to, Consumer<? super HistoryRecord> action) {
+            MappedLogParser.RecordSink sink = (user, day, cat, min, xp) -> action.accept(new HistoryRecord(user, day, cat, min, xp));
+            try {
+                if (xpb) XpbLog.scan(ch, to, state, sink);
+                else MappedLogParser.parse(ch, to, state, sink);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        // Hand out the first half, cut at a session header or block start (the second half starts with no user).
+        @Override public Spliterator<HistoryRecord> trySplit() {
+            if (!pending.isEmpty() || end - state.offset < 2 * MIN_SPLIT) return null;
+            long mid = state.offset + (end - state.offset) / 2, cut;
+            try {
+                cut = xpb ? XpbLog.blockAtOrAfter(ch, state.offset, mid, end) : ParallelLogLoader.nextHeader(ch, mid, end);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            if (cut <= state.offset || cut >= end) return null;
+            LogTail first = new LogTail();
+            first.offset = state.offset;
+            first.currentUser = state.currentUser;
+            first.sealed = state.sealed;
+            state.offset = cut;
+            state.currentUser = null;
+            state.sealed = false;
+            return new RangeSpliterator(ch, xpb, first, cut);
+        }
+
+        @Override public long estimateSize() { return (end - state.offset) / 24 + pending.size(); } // ~24 bytes a line
+        @Override public int characteristics() { return ORDERED | NONNULL | IMMUTABLE; }
+    }
+
+    // Some of one user's sessions (posting-list offsets lo..hi); splits by halving the list. Text sessions are read
+    // through one heap buffer per spliterator, never mapped one by one.
+    private static final class SessionSpliterator implements Spliterator<HistoryRecord> {
+        private final FileChannel ch;
+        private final boolean xpb;
+        private final String userKey;
+        private final long[] sessions;
+        private final long[] ends;   // where each session's bytes end (next block start or the index checkpoint)
+        private int lo;
+        private final int hi;
+        private ByteBuffer buf;
+        private final ArrayDeque<HistoryRecord> pending = new ArrayDeque<>();
+
+        SessionSpliterator(FileChannel ch, boolean xpb, String userKey, long[] sessions, long[] ends, int lo, int hi) {
+            this.ch = ch; this.xpb = xpb; this.userKey = userKey; this.sessions = sessions; this.ends = ends; this.lo = lo; this.hi = hi;
+        }
+
+        @Override public boolean tryAdvance(Consumer<? super HistoryRecord> action) {
+            while (pending.isEmpty() && lo < hi) read(lo++, pending::add);
+            HistoryRecord r = pending.poll();
+            if (r == null) return false;
+            action.accept(r);
+            return true;
+        }
+
+        @Override public void forEachRemaining(Consumer<? super HistoryRecord> action) {
+            for (HistoryRecord r; (r = pending.poll()) != null; ) action.accept(r);
+            while (lo < hi) read(lo++, action);
+        }
+
+        private void read(int i, Consumer<? super HistoryRecord> action) {
+            MappedLogParser.RecordSink sink = (user, day, cat, min, xp) -> action.accept(new HistoryRecord(user, day, cat, min, xp));
+            try {
+                if (xpb) {
+                    XpbLog.scanBlock(ch, sessions[i], userKey, sink);
+                } else {
+                    if (buf == null) buf = ByteBuffer.allocate(SESSION_BUFFER);
+                    buf = MappedLogParser.parseSession(ch, sessions[i], ends[i], buf, sink);
+                }
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+        }
+
+        @Override public Spliterator<HistoryRecord> trySplit() {
+            if (!pending.isEmpty() || hi - lo < 2) return null;
+            int mid = (lo + hi) >>> 1;
+            SessionSpliterator first = new SessionSpliterator(ch, xpb, userKey, sessions, ends, lo, mid);
+            lo = mid;
+            return first;
+        }
+
+        @Override public long estimateSize() { return hi - lo + pending.size(); } // sessions, not records
+        @Override public int characteristics() { return ORDERED | NONNULL | IMMUTABLE; }
+    }
+}
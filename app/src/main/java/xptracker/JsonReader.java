@@ -0,0 +1,129 @@
+// JsonReader
+package xptracker;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+
+//                                                                 Minimal JSON reader for BulkImport
+// Only what an activity export needs: a sequence of objects whose string/number/boolean members are picked by
+// BulkImport's column names; nested values are skipped.
+final class JsonReader {
+    private final byte[] b;
+    private final long base;   // file offset of b[0], for error messages
+    private int pos;
+
+    JsonReader(byte[] bytes, long base) { this.b = bytes; this.base = base; }
+
+    long offset() { return base + pos; }
+
+    // Past separators ('[', ']', ',' and whitespace) to the next '{'; false at the end.
+    boolean skipToObject() throws IOException {
+        while (pos < b.length) {
+            byte c = b[pos];
+            if (c == '{') return true;
+            if (c == '[' || c == ']' || c == ',' || (c <= ' ' && c >= 0)) { pos++; continue; }
+            throw error("expected an object");
+        }
+        return false;
+    }
+
+    // One object; members named like BulkImport columns land in row[role].
+    void object(String[] row) throws IOException {
+        expect('{');
+        skipSpace();
+        if (peek() == '}') { pos++; return; }
+        while (true) {
+            skipSpace();
+            String name = string();
+            skipSpace();
+            expect(':');
+            skipSpace();
+            int role = BulkImport.role(name);
+            String value = scalarOrSkip();
+            if (role >= 0 && value != null) row[role] = value;
+            skipSpace();
+            byte c = next();
+            if (c == '}') return;
+            if (c != ',') throw error("expected ',' or '}'");
+        }
+    }
+
+    // A string's text, or a number/true/false as written; null for null, objects and arrays (skipped).
+    private String scalarOrSkip() throws IOException {
+        byte c = peek();
+        if (c == '"') return string();
+        if (c == '{' || c == '[') { skipNested(); return null; }
+        int start = pos;
+        while (pos < b.length && b[pos] != ',' && b[pos] != '}' && b[pos] != ']' && b[pos] > ' ') pos++;
+        if (pos == start) throw error("expected a value");
+        String token = new String(b, start, pos - start, StandardCharsets.US_ASCII);
+        return token.equals("null") ? null : token;
+    }
+
+    private void skipNested() throws IOException {
+        int depth = 0;
+        do {
+            byte c = next();
+            if (c == '"') { pos--; string(); }
+            else if (c == '{' || c == '[') depth++;
+            else if (c == '}' || c == ']') depth--;
+        } while (depth > 0);
+    }
+
+    private String string() throws IOException {
+        expect('"');
+        int start = pos;
+        while (pos < b.length && b[pos] != '"' && b[pos] != '\\') pos++;
+        if (pos < b.length && b[pos] == '"') return new String(b, start, pos++ - start, StandardCharsets.UTF_8);
+        // Escapes: decode the plain part, then the rest char by char.
+        StringBuilder sb = new StringBuilder(new String(b, start, pos - start, StandardCharsets.UTF_8));
+        while (true) {
+            int run = pos;
+            while (pos < b.length && b[pos] != '"' && b[pos] != '\\') pos++;
+            sb.append(new String(b, run, pos - run, StandardCharsets.UTF_8));
+            byte c = next();
+            if (c == '"') return sb.toString();
+            byte e = next();
+            switch (e) {
+                case 'n': sb.append('\n'); break;
+                case 't': sb.append('\t'); break;
+                case 'r': sb.append('\r'); break;
+                case 'b': sb.append('\b'); break;
+                case 'f': sb.append('\f'); break;
+                case 'u':
+                    if (pos + 4 > b.length) throw error("bad \\u escape");
+                    try {
+                        sb.append((char) Integer.parseInt(new String(b, pos, 4, StandardCharsets.US_ASCII), 16));
+                    } catch (NumberFormatException ex) {
+                        throw error("bad \\u escape");
+                    }
+                    pos += 4;
+                    break;
+                default: sb.append((char) e); // \" \\ \/
+            }
+        }
+    }
+
+    private void skipSpace() {
+        while (pos < b.length && b[pos] <= ' ' && b[pos] >= 0) pos++;
+    }
+
+    private byte peek() throws IOException {
+        if (pos >= b.length) throw error("unexpected end of input");
+        return b[pos];
+    }
+
+    private byte next() throws IOException {
+        byte c = peek();
+        pos++;
+        return c;
+    }
+
+    private void expect(char c) throws IOException {
+        if (next() != c) { pos--; throw error("expected '" + c + "'"); }
+    }
+
+    private IOException error(String what) {
+        return new IOException("malformed JSON at byte " + offset() + ": " + what);
+    }
+}
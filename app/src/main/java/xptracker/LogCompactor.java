@@ -0,0 +1,172 @@
+// LogCompactor
+package xptracker;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+//                                                     Compaction: fold old sessions into one record per user, day and category
+// Sessions (or .xpb blocks) whose entries are all dated before the cutoff become daily rollup sessions at the start
+// of the new log; everything else is copied after them byte for byte. XP, minutes and per-category totals come out
+// the same, only the entry count shrinks (one per rollup line). The new log is built in a temp file and renamed over
+// the old one while holding the append lock, so a concurrent save waits and then lands in the new file.
+class LogCompactor implements MappedLogParser.RecordSink {
+    private final int cutoff;                                   // epoch day: entries before it may be rolled up
+    private final List<long[]> keep = new ArrayList<>();        // [from, to) byte ranges copied as they are
+    private final Map<String,Map<Long,long[]>> rollup = new LinkedHashMap<>(); // user -> (day << 16 | category) -> {minutes, xp}
+    private long groupStart = -1;                               // current session/block, and whether it must be kept
+    private boolean groupKeep;
+    // Records of the current group, held until we know whether it is kept (primitives: groups are small but many).
+    private String[] groupUser = new String[64];
+    private long[] groupKey = new long[64];
+    private int[] groupMin = new int[64], groupXp = new int[64];
+    private int groupSize = 0;
+
+    private LogCompactor(int cutoff) { this.cutoff = cutoff; }
+
+    // Compact 'log' in place; returns its new length.
+    static long compact(File log, int cutoffEpochDay) throws IOException {
+        try (FileChannel lock = LogWriter.lockAppends(log)) {
+            LogCompactor c = new LogCompactor(cutoffEpochDay);
+            File tmp = new File(log.getPath() + ".compact");
+            boolean xpb;
+            try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+                LogTail state = new LogTail();
+                xpb = XpbLog.isXpb(ch);
+                LogTail.parse(ch, ch.size(), state, c);
+                c.endGroup(state.offset);
+                Files.deleteIfExists(tmp.toPath());
+                if (xpb) c.writeXpb(tmp);
+                else c.writeText(tmp);
+                try (FileChannel out = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+                    if (out.size() == 0 && xpb) out.write(ByteBuffer.wrap(XpbLog.MAGIC));
+                    for (long[] r : c.keep) {
+                        for (long pos = r[0]; pos < r[1]; ) pos += ch.transferTo(pos, r[1] - pos, out);
+                        if (!xpb && !endsWithNewline(ch, r[1])) out.write(ByteBuffer.wrap(new byte[] { '\n' }));
+                    }
+                    out.force(false);
+                }
+            }
+            Files.move(tmp.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING,
+                    StandardCopyOption.ATOMIC_MOVE);
+            if (xpb) XpbLog.forgetEnd(lock);
+            return log.length();
+        }
+    }
+
+    // Sessions are delimited by session() calls (a .xpb block reports each of its users with the same offset).
+    @Override public void session(String user, long offset) {
+        if (offset != groupStart) endGroup(offset);
+    }
+
+    @Override public void record(String user, int epochDay, int categoryId, int minutes, int xp) {
+        if (epochDay == MappedLogParser.NO_DATE || epochDay >= cutoff) groupKeep = true;
+        if (groupKeep) return; // the whole group is copied as is
+        if (groupSize == groupKey.length) {
+            int n = 2 * groupSize;
+            groupUser = Arrays.copyOf(groupUser, n); groupKey = Arrays.copyOf(groupKey, n);
+            groupMin = Arrays.copyOf(groupMin, n);   groupXp = Arrays.copyOf(groupXp, n);
+        }
+        groupUser[groupSize] = user;
+        groupKey[groupSize] = ((long) epochDay << 16) | categoryId;
+        groupMin[groupSize] = minutes;
+        groupXp[groupSize] = xp;
+        groupSize++;
+    }
+
+    // Close the group that started at groupStart (it runs up to 'next').
+    private void endGroup(long next) {
+        if (groupStart >= 0) {
+            if (groupKeep) {
+                keep.add(new long[] { groupStart, next });
+            } else {
+                Map<Long,long[]> sums = null;
+                for (int i = 0; i < groupSize; i++) {
+                    if (i == 0 || groupUser[i] != groupUser[i - 1]) sums = rollup.computeIfAbsent(groupUser[i], k -> new HashMap<>());
+                    long[] sum = sums.computeIfAbsent(groupKey[i], k -> new long[2]);
+                    sum[0] += groupMin[i];
+                    sum[1] += groupXp[i];
+                }
+            }
+        }
+        groupStart = next;
+        groupKeep = false;
+        Arrays.fill(groupUser, 0, groupSize, null);
+        groupSize = 0;
+    }
+
+    // One "=== Session for <user> on <first day> (compacted) ===" session per user, days in order.
+    private void writeText(File tmp) throws IOException {
+        try (Writer out = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(tmp), Charset.defaultCharset()), 1 << 16)) {
+            for (Map.Entry<String,Map<Long,long[]>> u : rollup.entrySet()) {
+                List<Map.Entry<Long,long[]>> days = sorted(u.getValue());
+                String header = MappedLogParser.HEADER_PREFIX + u.getKey() + " on " + MappedLogParser.dateString((int) (days.get(0).getKey() >> 16)) + " (compacted) ===";
+                out.write((MappedLogParser.CHECKSUMS ? MappedLogParser.sealHeader(header) : header) + "\n");
+                for (Map.Entry<Long,long[]> d : days) {
+                    String date = MappedLogParser.dateString((int) (d.getKey() >> 16));
+                    String cat = Categories.name((int) (d.getKey() & 0xFFFF));
+                    for (long[] part : split(d.getValue(), Integer.MAX_VALUE)) {
+                        String csv = date + "," + cat + "," + part[0] + "," + part[1];
+                        out.write((MappedLogParser.CHECKSUMS ? MappedLogParser.sealRecord(u.getKey(), csv) : csv) + "\n");
+                    }
+                }
+                out.write("\n");
+            }
+        }
+    }
+
+    private static List<Map.Entry<Long,long[]>> sorted(Map<Long,long[]> sums) {
+        List<Map.Entry<Long,long[]>> days = new ArrayList<>(sums.entrySet());
+        days.sort(Map.Entry.comparingByKey());
+        return days;
+    }
+
+    private void writeXpb(File tmp) throws IOException {
+        List<ActivityEntry> entries = new ArrayList<>();
+        for (Map.Entry<String,Map<Long,long[]>> u : rollup.entrySet()) {
+            for (Map.Entry<Long,long[]> d : sorted(u.getValue())) {
+                String date = MappedLogParser.dateString((int) (d.getKey() >> 16));
+                String cat = Categories.name((int) (d.getKey() & 0xFFFF));
+                for (long[] part : split(d.getValue(), 0xFFFF)) {   // minutes are a ushort column
+                    entries.add(new ActivityEntry(date, cat, (int) part[0], (int) part[1], u.getKey()));
+                }
+            }
+        }
+        if (!entries.isEmpty()) XpbLog.append(tmp, entries, false, true); // archived rollups: compressed blocks
+    }
+
+    // {minutes, xp} in pieces that fit the record fields (sums are preserved).
+    private static List<long[]> split(long[] sum, long maxMinutes) {
+        List<long[]> parts = new ArrayList<>();
+        long m = sum[0], x = sum[1];
+        while (m > maxMinutes || x > Integer.MAX_VALUE) {
+            long pm = Math.min(m, maxMinutes), px = Math.min(x, Integer.MAX_VALUE);
+            parts.add(new long[] { pm, px });
+            m -= pm;
+            x -= px;
+        }
+        parts.add(new long[] { m, x });
+        return parts;
+    }
+
+    private static boolean endsWithNewline(FileChannel ch, long end) throws IOException {
+        if (end == 0) return true;
+        ByteBuffer b = ByteBuffer.allocate(1);
+        return ch.read(b, end - 1) == 1 && b.get(0) == '\n';
+    }
+}
@@ -0,0 +1,92 @@
+// LogTail
+package xptracker;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+//                                                               Incremental reader for xp_log.txt (byte-offset checkpoint + parser state)
+// Remembers how far it has read and which "=== Session for" user was in effect there, so each call
+// parses only newly appended bytes. If the file shrank or the bytes before the checkpoint changed,
+// the sink is reset and the whole file is read again.
+class LogTail {
+    interface Sink extends MappedLogParser.RecordSink {
+        void reset();                 // previously delivered records are no longer valid
+    }
+
+    private static final int CHECK_BYTES = 4096;  // bytes fingerprinted at the start of the file and just before the checkpoint
+
+    long offset = 0;            // bytes consumed so far (always at a line boundary)
+    String currentUser = null;  // header user in effect at 'offset'
+    boolean sealed = false;     // that header carried a checksum, so its session's records must too
+    long check = 0;             // fingerprint of the consumed prefix (see fingerprint())
+    long seenLength = -1;       // file length and mtime at the last completed read: if both still match,
+    long seenMtime = -1;        // the file is taken as unchanged without opening it
+    long skipped = 0;           // bytes of damaged lines/blocks passed over before 'offset'
+
+    void clear() { offset = 0; currentUser = null; sealed = false; check = 0; seenLength = -1; seenMtime = -1; skipped = 0; }
+
+    // Parses the bytes between the checkpoint and 'end', advancing the checkpoint.
+    interface RangeParser {
+        void parse(FileChannel ch, long end) throws IOException;
+    }
+
+    // Parse whatever was appended since the last call. Returns true if the sink saw any change.
+    boolean read(File log, Sink sink) throws IOException {
+        return read(log, sink, (ch, end) -> parse(ch, end, this, sink));
+    }
+
+    // Parse either log format from the state's checkpoint (the .xpb magic decides, so both can be read back).
+    static void parse(FileChannel ch, long end, LogTail state, MappedLogParser.RecordSink sink) throws IOException {
+        if (XpbLog.isXpb(ch)) XpbLog.scan(ch, end, state, sink);
+        else MappedLogParser.parse(ch, end, state, sink);
+    }
+
+    // Same, but with the caller choosing how the new bytes are parsed (e.g. in parallel).
+    boolean read(File log, Sink sink, RangeParser parser) throws IOException {
+        long mtime = log.lastModified(); // before the length: a write in between shows up as a changed mtime next time
+        long length = log.exists() ? log.length() : 0;
+        if (length == seenLength && mtime == seenMtime) return false;
+        boolean rescan = length < offset;
+        if (!rescan && offset > 0 && fingerprint(log, offset) != check) rescan = true;
+        if (rescan) {
+            // Log was truncated, replaced or edited in place: start over from byte 0.
+            clear();
+            sink.reset();
+        }
+        if (length == offset) {
+            seenLength = length; seenMtime = mtime;
+            return rescan;
+        }
+
+        long before = offset;
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            parser.parse(ch, length);
+        } finally {
+            // Also when a sink abandons the read part way: what was consumed stays valid.
+            check = fingerprint(log, offset);
+        }
+        seenLength = length; seenMtime = mtime; // only once the read completed (an abandoned read must be resumed)
+        return rescan || offset != before;
+    }
+
+    // CRC of the first and last CHECK_BYTES before 'end': cheap, and catches rewrites that keep the file length.
+    static long fingerprint(File log, long end) throws IOException {
+        CRC32 crc = new CRC32();
+        try (RandomAccessFile raf = new RandomAccessFile(log, "r")) {
+            byte[] buf = new byte[(int) Math.min(CHECK_BYTES, end)];
+            raf.readFully(buf);
+            crc.update(buf);
+            raf.seek(end - buf.length);
+            raf.readFully(buf);
+            crc.update(buf);
+        } catch (EOFException ex) {
+            return -1; // shorter than we thought: never matches a stored check
+        }
+        return crc.getValue() ^ (end << 32);
+    }
+}
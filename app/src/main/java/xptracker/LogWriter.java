@@ -0,0 +1,177 @@
+// LogWriter
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+
+//                                                           Log writer thread: saves are queued and written in batches off the EDT
+// Each save becomes a Batch on a bounded queue. The writer takes whatever is queued, writes all batches for the same
+// file in one buffered write (one session header per batch, or one .xpb block), optionally fsyncs, and then
+// completes each batch's future. The UI never waits on the disk, except at exit where close() drains the queue.
+class LogWriter {
+    static final int QUEUE_CAPACITY = 64;
+
+    static final class Batch {
+        final File file;
+        final String user;
+        final List<ActivityEntry> entries;
+        final LocalDateTime savedAt = LocalDateTime.now();   // header time: when Save was pressed, not when written
+        final SessionJournal.Mark mark;                     // written with the session, so a journal replay can skip it (or null)
+        final CompletableFuture<Void> done = new CompletableFuture<>();
+        Batch(File file, String user, List<ActivityEntry> entries) { this(file, user, entries, null); }
+        Batch(File file, String user, List<ActivityEntry> entries, SessionJournal.Mark mark) {
+            this.file = file; this.user = user; this.entries = entries; this.mark = mark;
+        }
+    }
+
+    private static final Batch CLOSE = new Batch(null, null, null);
+    private final ArrayBlockingQueue<Batch> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final boolean binary, sharded, fsync, compress;
+    private final Thread writer;
+
+    LogWriter(boolean binary, boolean sharded, boolean fsync, boolean compress) {
+        this.binary = binary; this.sharded = sharded; this.fsync = fsync; this.compress = compress;
+        writer = new Thread(this::run, "xp-log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Queue one save; the future completes (possibly exceptionally) once it is on disk. Never blocks.
+    Batch submit(File file, String user, List<ActivityEntry> entries, SessionJournal.Mark mark) {
+        Batch b = new Batch(file, user, entries, mark);
+        if (!queue.offer(b)) b.done.completeExceptionally(new IOException("too many saves waiting to be written"));
+        return b;
+    }
+
+    // Wait for everything already queued to be written, then stop the thread.
+    void close() {
+        try {
+            queue.put(CLOSE);
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void run() {
+        List<Batch> batch = new ArrayList<>();
+        try {
+            while (true) {
+                batch.add(queue.take());
+                queue.drainTo(batch);
+                int closeAt = batch.indexOf(CLOSE);
+                List<Batch> work = (closeAt < 0) ? batch : batch.subList(0, closeAt);
+                for (int from = 0; from < work.size(); ) {
+                    int to = from + 1;
+                    while (to < work.size() && work.get(to).file.equals(work.get(from).file)) to++;
+                    write(work.subList(from, to));
+                    from = to;
+                }
+                if (closeAt >= 0) return;
+                batch.clear();
+            }
+        } catch (InterruptedException ex) {
+            // shutting down
+        }
+    }
+
+    private void write(List<Batch> group) {
+        try {
+            append(group, binary, sharded, fsync, compress);
+        } catch (IOException | RuntimeException ex) {
+            for (Batch b : group) b.done.completeExceptionally(ex);
+            return;
+        }
+        for (Batch b : group) b.done.complete(null);
+    }
+
+    // One write (and at most one fsync) for consecutive batches that go to the same file. Also used directly
+    // by BulkImport, which doesn't need the queue. Nothing is written if any batch's user has an unsafe name.
+    static void append(List<Batch> group, boolean binary, boolean sharded, boolean fsync, boolean compress) throws IOException {
+        for (Batch b : group) {
+            String problem = userNameProblem(b.user);
+            if (problem != null) throw new IOException("cannot save for user '" + b.user + "': " + problem);
+        }
+        File file = group.get(0).file;
+        if (sharded) {
+            if (!ShardStore.DIR.isDirectory() && !ShardStore.DIR.mkdirs()) throw new IOException("could not create " + ShardStore.DIR);
+            ShardStore.register(group.get(0).user, file); // one shard is one user
+        }
+        if (binary) {
+            List<ActivityEntry> all = new ArrayList<>();
+            SessionJournal.Mark mark = null;
+            for (Batch b : group) {
+                all.addAll(b.entries);
+                if (b.mark != null) mark = b.mark; // the latest one covers the earlier ones
+            }
+            XpbLog.append(file, all, fsync, compress, mark); // one columnar block for the whole group
+        } else {
+            StringBuilder sb = new StringBuilder();
+            String nl = System.lineSeparator();
+            for (Batch b : group) {
+                // Header marks which user and when this session was saved (and what of their journal it covers).
+                String header = MappedLogParser.HEADER_PREFIX + b.user + " on " + b.savedAt
+                        + (b.mark == null ? "" : " journal " + b.mark) + " ===";
+                sb.append(MappedLogParser.CHECKSUMS ? MappedLogParser.sealHeader(header) : header).append(nl);
+                for (ActivityEntry e : b.entries) {  // one CSV line per entry
+                    sb.append(MappedLogParser.CHECKSUMS ? MappedLogParser.sealRecord(b.user, e.toCSV()) : e.toCSV()).append(nl);
+                }
+                sb.append(nl); // blank line to separate sessions
+            }
+            appendText(file, sb.toString().getBytes(Charset.defaultCharset()), fsync);
+        }
+    }
+
+    // Why 'user' cannot go into a session header, or null. A line break would end the header early, and the
+    // parser takes the name up to the first " on " and treats "===" as header syntax.
+    static String userNameProblem(String user) {
+        if (user.indexOf('\n') >= 0 || user.indexOf('\r') >= 0) return "line break in user name";
+        if (user.contains(" on ")) return "' on ' in user name";
+        if (user.contains("===")) return "'===' in user name";
+        return null;
+    }
+
+    // Exclusive OS lock that every append (and compaction) of 'log' takes first. It lives in a sidecar file so it
+    // stays valid when compaction replaces the log itself. Closing the returned channel releases it. The .xpb
+    // writer keeps a note in the sidecar (see XpbLog.verifiedEnd), so the channel is readable too.
+    static FileChannel lockAppends(File log) throws IOException {
+        FileChannel ch = FileChannel.open(new File(log.getPath() + ".lock").toPath(),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        try {
+            ch.lock();
+        } catch (IOException | RuntimeException ex) {
+            ch.close();
+            throw ex;
+        }
+        return ch;
+    }
+
+    // Append whole session blocks under the append lock, so blocks from two instances never interleave.
+    // If the file does not end in a newline (another writer died mid-line), one is written first so our
+    // header starts its own line. The torn line is then skipped: it lacks the seal its sealed session requires, even
+    // when it was cut inside the last field and still looks like a record. (With checksums off nothing can tell such
+    // a line from a complete one.)
+    @SuppressWarnings("try") // the lock is only held for the try block
+    static void appendText(File file, byte[] block, boolean fsync) throws IOException {
+        try (FileChannel lock = lockAppends(file);
+             FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = ch.size();
+            ByteBuffer last = ByteBuffer.allocate(1);
+            boolean torn = end > 0 && ch.read(last, end - 1) == 1 && last.get(0) != '\n';
+            ByteBuffer out = ByteBuffer.allocate(block.length + (torn ? 1 : 0));
+            if (torn) out.put((byte) '\n');
+            out.put(block).flip();
+            while (out.hasRemaining()) end += ch.write(out, end);
+            if (fsync) ch.force(false);
+        }
+    }
+}
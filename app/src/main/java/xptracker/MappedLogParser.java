@@ -0,0 +1,364 @@
+// MappedLogParser
+package xptracker;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDate;
+import java.util.zip.CRC32;
+
+//                                                           Memory-mapped parser for xp_log.txt (scans bytes; no String per CSV line)
+// Maps the file in windows and walks ASCII bytes directly: the date becomes an epoch-day int, the category a
+// Categories id, minutes/xp plain ints. Only a header line builds a String (the user name), and only when it changes.
+// Accepts the same lines as the old readLine/split/parseInt parser (headers, 4-field CSV, malformed numbers skipped).
+// Lines may end in a checksum: a header in " #<crc>", a record in ",#<crc>" (8 hex digits). A header that fails its
+// check ends the current session like an unreadable one, and a record's check covers its user's name as well, so a
+// damaged line is skipped rather than credited to anyone. Under a sealed header every record must be sealed (a line
+// torn inside its last field would otherwise still parse). Skipped bytes are counted in LogTail.skipped.
+class MappedLogParser {
+    interface RecordSink {
+        void record(String user, int epochDay, int categoryId, int minutes, int xp);
+        default void chunkDone(long offset) {}  // called every PROGRESS bytes or so and after each block; may throw to abandon the read
+        default void session(String user, long offset) {}  // a session of 'user' starts at this byte offset
+    }
+
+    static final String HEADER_PREFIX = "=== Session for ";   // start of every session header line
+    static final int NO_DATE = Integer.MIN_VALUE;    // date field was not yyyy-mm-dd (entry still counts)
+    private static final int WINDOW = 16 << 20;       // bytes mapped at a time
+    private static final int PROGRESS = 1 << 20;      // a mapped parse reports its offset (chunkDone) about this often
+    private static final byte[] HEADER = HEADER_PREFIX.getBytes(StandardCharsets.US_ASCII);
+    private static final int SEAL = 10;               // " #" or ",#" + 8 hex digits
+
+    // Writers seal every line unless -Dxptracker.checksums=false (older versions skip sealed records).
+    static final boolean CHECKSUMS = !"false".equalsIgnoreCase(System.getProperty("xptracker.checksums"));
+
+    private final LogTail state;   // offset + header user, advanced as lines are consumed
+    private final RecordSink sink;
+    private byte[] userBytes = new byte[0];   // raw bytes of state.currentUser's header name (to reuse the String)
+    private int lastUserLen = -1;             // length of the header name that produced state.currentUser (-1 = none)
+    private int userCrc;                      // CRC-32 of state.currentUser's name (mixed into each record's check)
+    private final CRC32 crc = new CRC32();
+    private ByteBuffer view;                  // the buffer being scanned, repositioned for each checksum
+    private long badNumber = 0;               // scratch flag for parseInt()
+    private long base = 0;                    // file position of index 0 of the buffer being scanned
+    private boolean oneSession = false;       // parseSession(): stop at the second header
+    private int headers = 0;
+    private boolean stop = false;
+    private long nextProgress = Long.MAX_VALUE;  // report at the first line boundary at or past this (run() only)
+
+    private MappedLogParser(LogTail state, RecordSink sink) {
+        this.state = state;
+        this.sink = sink;
+        if (state.currentUser != null) userCrc = crc(state.currentUser.trim()); // resuming inside a session
+    }
+
+    // Parse every complete line between state.offset and 'end', advancing state. A trailing partial line is left unread.
+    static void parse(FileChannel ch, long end, LogTail state, RecordSink sink) throws IOException {
+        new MappedLogParser(state, sink).run(ch, end);
+    }
+
+    // Parse just the session whose header starts at 'at' (up to the next header or 'end'), e.g. from a posting list.
+    // The bytes are read into 'scratch' rather than mapped: a user may have more sessions than the OS allows live
+    // mappings. Returns the buffer to pass to the next call (grown if a line did not fit).
+    static ByteBuffer parseSession(FileChannel ch, long at, long end, ByteBuffer scratch, RecordSink sink) throws IOException {
+        LogTail state = new LogTail();
+        state.offset = at;
+        MappedLogParser p = new MappedLogParser(state, sink);
+        p.oneSession = true;
+        return p.runBuffered(ch, end, scratch);
+    }
+
+    // Parse complete lines of an in-memory buffer (positions 0..limit) with the given starting state.
+    static int parse(ByteBuffer buf, int limit, LogTail state, RecordSink sink) {
+        return new MappedLogParser(state, sink).scan(buf, limit);
+    }
+
+    private void run(FileChannel ch, long end) throws IOException {
+        long pos = state.offset;
+        nextProgress = pos + PROGRESS;
+        boolean skipping = false; // inside a line longer than WINDOW: drop bytes until its newline
+        while (pos < end) {
+            int len = (int) Math.min(WINDOW, end - pos);
+            MappedByteBuffer buf = ch.map(FileChannel.MapMode.READ_ONLY, pos, len);
+            int consumed;
+            if (skipping) {
+                int nl = indexOf(buf, 0, len, (byte) '\n');
+                consumed = (nl < 0) ? len : nl + 1;
+                skipping = nl < 0;
+                state.skipped += consumed;
+            } else {
+                base = pos;
+                consumed = scan(buf, len);
+                if (stop) break;
+                if (consumed == 0) {
+                    if (len < WINDOW) break;     // partial last line: wait for the rest
+                    skipping = true;             // garbage line longer than a window
+                    consumed = len;
+                    state.skipped += len;
+                }
+            }
+            pos += consumed;
+            if (!skipping) {
+                state.offset = pos;
+                sink.chunkDone(pos);
+            }
+        }
+    }
+
+    // run() through one reused heap buffer. A line longer than WINDOW is left to run(), which skips it.
+    private ByteBuffer runBuffered(FileChannel ch, long end, ByteBuffer buf) throws IOException {
+        long pos = state.offset;
+        while (pos < end) {
+            int want = (int) Math.min(buf.capacity(), end - pos);
+            buf.clear().limit(want);
+            while (buf.hasRemaining() && ch.read(buf, pos + buf.position()) >= 0) { }
+            int len = buf.position();
+            base = pos;
+            int consumed = scan(buf, len);
+            if (stop) break;
+            if (consumed == 0) {
+                if (len < want || pos + len >= end) break;   // partial last line: wait for the rest
+                if (buf.capacity() >= WINDOW) { run(ch, end); break; }
+                buf = ByteBuffer.allocate(Math.min(WINDOW, 2 * buf.capacity()));
+                continue;
+            }
+            pos += consumed;
+            state.offset = pos;
+            sink.chunkDone(pos);
+        }
+        return buf;
+    }
+
+    private int scan(ByteBuffer buf, int limit) {
+        view = buf.duplicate();
+        int lineStart = 0;
+        for (int i = 0; i < limit; i++) {
+            if (buf.get(i) != '\n') continue;
+            line(buf, lineStart, i);
+            if (stop) return lineStart;
+            lineStart = i + 1;
+            if (base + lineStart >= nextProgress) progress(base + lineStart);
+        }
+        return lineStart;
+    }
+
+    // Mid-window checkpoint: everything before 'at' has been delivered, so the read can stop (or resume) here.
+    private void progress(long at) {
+        state.offset = at;
+        nextProgress = at + PROGRESS;
+        sink.chunkDone(at);
+    }
+
+    private void line(ByteBuffer buf, int from, int nl) {
+        int to = (nl > from && buf.get(nl - 1) == '\r') ? nl - 1 : nl;    // CRLF written on Windows
+        int h = startsWith(buf, from, to, HEADER) ? from : tornHeader(buf, from, to);
+        if (h >= 0) {
+            if (oneSession && headers++ > 0) { stop = true; return; }
+            if (h > from) state.skipped += h - from;  // the torn line in front of it
+            if (header(buf, h, to)) sink.session(state.currentUser, base + h);
+            else state.skipped += nl + 1 - h;
+            return;
+        }
+        if (!record(buf, from, to) && trimStart(buf, from, to) < to) state.skipped += nl + 1 - from;
+    }
+
+    // date,category,minutes,xp[,#crc]  (String.split drops trailing empty fields, so "a,b,1,2,," is still 4 fields)
+    private boolean record(ByteBuffer buf, int from, int to) {
+        String user = state.currentUser;
+        if (user == null) return false;
+        int c1 = indexOf(buf, from, to, (byte) ','); if (c1 < 0) return false;
+        int c2 = indexOf(buf, c1 + 1, to, (byte) ','); if (c2 < 0) return false;
+        int c3 = indexOf(buf, c2 + 1, to, (byte) ','); if (c3 < 0) return false;
+        int c4 = indexOf(buf, c3 + 1, to, (byte) ',');
+        int xpEnd = to;
+        if (c4 >= 0 && c4 + 1 < to && buf.get(c4 + 1) == '#') {
+            long want = (to - c4 == SEAL) ? hex(buf, c4 + 2, to) : -1;
+            if (want < 0 || (crc(from, c4) ^ userCrc) != (int) want) return false;
+            xpEnd = c4;
+        } else if (state.sealed) {
+            return false;  // unsealed line in a sealed session: torn or foreign
+        } else if (c4 >= 0) {
+            for (int i = c4; i < to; i++) if (buf.get(i) != ',') return false;
+            xpEnd = c4;
+        }
+        badNumber = 0;
+        int minutes = parseInt(buf, c2 + 1, c3);
+        int xp = parseInt(buf, c3 + 1, xpEnd);
+        if (badNumber != 0) return false; // Skip malformed numeric lines but continue parsing.
+
+        int ds = trimStart(buf, from, c1), de = trimEnd(buf, ds, c1);
+        int cs = trimStart(buf, c1 + 1, c2), ce = trimEnd(buf, cs, c2);
+        sink.record(user, epochDay(buf, ds, de), Categories.intern(buf, cs, ce), minutes, xp);
+        return true;
+    }
+
+    // A writer that died mid-line leaves a torn line that the next session's header is glued onto
+    // ("2024-05-0=== Session for ..."). Resync on that header instead of crediting its lines to the previous user.
+    private static int tornHeader(ByteBuffer buf, int from, int to) {
+        int eq = indexOf(buf, from, to, (byte) '=');   // CSV lines never contain '='
+        return (eq > from && startsWith(buf, eq, to, HEADER)) ? eq : -1;
+    }
+
+    // The header line buf[h, to). Returns false (and ends the current session) if it is unreadable or fails its check.
+    private boolean header(ByteBuffer buf, int h, int to) {
+        state.sealed = false;
+        if (to - h >= HEADER.length + SEAL && buf.get(to - SEAL) == ' ' && buf.get(to - SEAL + 1) == '#') {
+            long want = hex(buf, to - 8, to);
+            if (want >= 0) {
+                if (crc(h, to - SEAL) != (int) want) { state.currentUser = null; lastUserLen = -1; return false; }
+                to -= SEAL;
+                state.sealed = true;
+            }
+        }
+        // Extract the user between "=== Session for " and " on "
+        int start = h + HEADER.length;
+        int onIdx = -1;
+        for (int i = start; i + 4 <= to; i++) {
+            if (buf.get(i) == ' ' && buf.get(i + 1) == 'o' && buf.get(i + 2) == 'n' && buf.get(i + 3) == ' ') { onIdx = i; break; }
+        }
+        if (onIdx <= start) { state.currentUser = null; lastUserLen = -1; return false; }
+        int s = trimStart(buf, start, onIdx), e = trimEnd(buf, s, onIdx);
+        int len = e - s;
+        if (len == lastUserLen && state.currentUser != null) {
+            boolean same = true;
+            for (int i = 0; i < len && same; i++) same = buf.get(s + i) == userBytes[i];
+            if (same) return true; // same user as the previous session: keep the String we already have
+        }
+        if (userBytes.length < len) userBytes = new byte[Math.max(len, 2 * userBytes.length)];
+        for (int i = 0; i < len; i++) userBytes[i] = buf.get(s + i);
+        lastUserLen = len;
+        state.currentUser = new String(userBytes, 0, len, Charset.defaultCharset());
+        crc.reset();
+        crc.update(userBytes, 0, len);
+        userCrc = (int) crc.getValue();
+        return true;
+    }
+
+    // The journal stamp on the session header at 'at' ("... on <time> journal <mark> ===", see LogWriter.append),
+    // or null if it has none. Only called for headers the parser accepted.
+    static SessionJournal.Mark journalMark(FileChannel ch, long at) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1024);
+        while (buf.hasRemaining() && ch.read(buf, at + buf.position()) >= 0) { }
+        int nl = indexOf(buf, 0, buf.position(), (byte) '\n');
+        if (nl < 0) return null;
+        String line = new String(buf.array(), 0, (nl > 0 && buf.get(nl - 1) == '\r') ? nl - 1 : nl, Charset.defaultCharset());
+        if (line.length() > SEAL && line.startsWith(" #", line.length() - SEAL)) line = line.substring(0, line.length() - SEAL);
+        int j = line.lastIndexOf(" journal ");
+        if (j < 0 || !line.endsWith(" ===")) return null;
+        return SessionJournal.Mark.parse(line.substring(j + " journal ".length(), line.length() - " ===".length()));
+    }
+
+    // Line checksums: CRC-32 of the header line, or of the CSV line XOR the CRC-32 of its user's name.
+    static String sealHeader(String header) {
+        return header + " #" + hex8(crc(header));
+    }
+
+    static String sealRecord(String user, String csv) {
+        return csv + ",#" + hex8(crc(csv) ^ crc(user.trim()));
+    }
+
+    private static int crc(String s) {
+        CRC32 c = new CRC32();
+        c.update(s.getBytes(Charset.defaultCharset()));
+        return (int) c.getValue();
+    }
+
+    // CRC-32 of bytes [from, to) of the buffer being scanned.
+    private int crc(int from, int to) {
+        view.clear().position(from).limit(to);
+        crc.reset();
+        crc.update(view);
+        return (int) crc.getValue();
+    }
+
+    private static String hex8(int v) {
+        String s = Integer.toHexString(v);
+        return "00000000".substring(s.length()) + s;
+    }
+
+    // 8 hex digits at buf[from, to) as an unsigned value, or -1.
+    private static long hex(ByteBuffer buf, int from, int to) {
+        long v = 0;
+        for (int i = from; i < to; i++) {
+            int d = Character.digit(buf.get(i), 16);
+            if (d < 0) return -1;
+            v = (v << 4) | d;
+        }
+        return v;
+    }
+
+    // Same acceptance as Integer.parseInt(field.trim()) for ASCII input; sets badNumber on failure.
+    private int parseInt(ByteBuffer buf, int from, int to) {
+        int s = trimStart(buf, from, to), e = trimEnd(buf, s, to);
+        if (s == e) { badNumber = 1; return 0; }
+        boolean neg = false;
+        byte first = buf.get(s);
+        if (first == '-' || first == '+') { neg = first == '-'; s++; if (s == e) { badNumber = 1; return 0; } }
+        long v = 0;
+        for (int i = s; i < e; i++) {
+            int d = buf.get(i) - '0';
+            if (d < 0 || d > 9) { badNumber = 1; return 0; }
+            v = v * 10 + d;
+            if (v > 0x80000000L) { badNumber = 1; return 0; }
+        }
+        if (neg) v = -v;
+        if (v > Integer.MAX_VALUE) { badNumber = 1; return 0; }
+        return (int) v;
+    }
+
+    // yyyy-mm-dd -> days since 1970-01-01 (civil calendar arithmetic), or NO_DATE.
+    static int epochDay(ByteBuffer buf, int from, int to) {
+        int y = 0, m = 0, d = 0, part = 0, digits = 0;
+        for (int i = from; i < to; i++) {
+            byte b = buf.get(i);
+            if (b == '-' && digits > 0 && part < 2) { part++; digits = 0; continue; }
+            int v = b - '0';
+            if (v < 0 || v > 9 || ++digits > 4) return NO_DATE;
+            if (part == 0) y = y * 10 + v; else if (part == 1) m = m * 10 + v; else d = d * 10 + v;
+        }
+        if (part != 2 || digits == 0 || m < 1 || m > 12 || d < 1 || d > 31) return NO_DATE;
+        return epochDay(y, m, d);
+    }
+
+    static int epochDay(String date) {
+        byte[] b = date.trim().getBytes(StandardCharsets.ISO_8859_1);
+        return epochDay(ByteBuffer.wrap(b), 0, b.length);
+    }
+
+    static int epochDay(int y, int m, int d) {
+        y -= (m <= 2) ? 1 : 0;
+        int era = Math.floorDiv(y, 400);
+        int yoe = y - era * 400;
+        int doy = (153 * (m + (m > 2 ? -3 : 9)) + 2) / 5 + d - 1;
+        int doe = yoe * 365 + yoe / 4 - yoe / 100 + doy;
+        return era * 146097 + doe - 719468;
+    }
+
+    static String dateString(int epochDay) {
+        return (epochDay == NO_DATE) ? "?" : LocalDate.ofEpochDay(epochDay).toString();
+    }
+
+    private static boolean startsWith(ByteBuffer buf, int from, int to, byte[] prefix) {
+        if (to - from < prefix.length) return false;
+        for (int i = 0; i < prefix.length; i++) if (buf.get(from + i) != prefix[i]) return false;
+        return true;
+    }
+
+    static int indexOf(ByteBuffer buf, int from, int to, byte b) {
+        for (int i = from; i < to; i++) if (buf.get(i) == b) return i;
+        return -1;
+    }
+
+    private static int trimStart(ByteBuffer buf, int from, int to) {
+        while (from < to && (buf.get(from) & 0xFF) <= ' ') from++;
+        return from;
+    }
+
+    private static int trimEnd(ByteBuffer buf, int from, int to) {
+        while (to > from && (buf.get(to - 1) & 0xFF) <= ' ') to--;
+        return to;
+    }
+}
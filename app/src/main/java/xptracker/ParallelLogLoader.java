@@ -0,0 +1,204 @@
+// ParallelLogLoader
+package xptracker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Consumer;
+
+//                                                        Parallel (fork-join) aggregation: split the log at "=== Session for" lines
+// Each range starts on a header, so it can be parsed with no knowledge of the bytes before it; ranges are
+// aggregated into per-user totals on the common ForkJoinPool and the partial maps are merged pairwise.
+class ParallelLogLoader {
+    static final long MIN_PARALLEL_BYTES = 16L << 20;   // below this one thread beats the split/merge overhead
+    private static final long MIN_RANGE = 4L << 20;      // smallest byte range handed to one task
+    private static final byte[] NL_HEADER = ("\n" + MappedLogParser.HEADER_PREFIX).getBytes(StandardCharsets.US_ASCII);
+
+    // Parallel mode is on by default for big reads on multi-core machines; -Dxptracker.parallel=false turns it off.
+    static boolean worthIt(long bytes) {
+        return bytes >= MIN_PARALLEL_BYTES
+                && ForkJoinPool.getCommonPoolParallelism() > 1
+                && !"false".equalsIgnoreCase(System.getProperty("xptracker.parallel"));
+    }
+
+    // Aggregate [state.offset, end) per user (case-folded key), advancing state exactly like a serial parse would.
+    // The sessions found are appended to 'blocks' in log order (records before the first header widen its last block).
+    static Map<String,UserTotals> aggregate(FileChannel ch, long end, LogTail state, BlockIndex blocks) throws IOException {
+        return aggregate(ch, end, state, blocks, null);
+    }
+
+    // Same, handing 'onRange' the totals of every range finished so far each time one finishes (see Progress).
+    // If it throws, the other ranges stop at their next chunk and aggregate() rethrows that, leaving 'state' as it was.
+    static Map<String,UserTotals> aggregate(FileChannel ch, long end, LogTail state, BlockIndex blocks,
+                                            Consumer<Map<String,UserTotals>> onRange) throws IOException {
+        long[] cuts = cuts(ch, state.offset, end);
+        boolean resumed = state.currentUser != null;
+        Progress progress = (onRange == null) ? null : new Progress(onRange);
+        Range r;
+        try {
+            r = ForkJoinPool.commonPool().invoke(new RangeTask(ch, cuts, 0, cuts.length - 1, state.currentUser, state.sealed, progress));
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        } catch (RuntimeException ex) {
+            if (progress != null && progress.abandoned != null) throw progress.abandoned; // the callback's own exception
+            throw ex;
+        }
+        state.offset = r.offset;
+        state.currentUser = r.user;
+        state.sealed = r.sealed;
+        state.skipped += r.skipped;
+        blocks.append(r.blocks, resumed);
+        return r.users;
+    }
+
+    // Result of parsing one or more adjacent ranges.
+    private static class Range {
+        final long start;                  // first byte of the range
+        long offset;                       // end of the last complete line consumed
+        String user;                       // header user in effect at 'offset'
+        boolean sealed;                    // its header was sealed
+        long skipped;                      // damaged bytes passed over
+        Map<String,UserTotals> users;
+        BlockIndex blocks;
+        Range(long start) { this.start = start; }
+    }
+
+    // Running totals shared by the range tasks of one aggregate() call. Ranges finish out of order, so a user's
+    // recent entries in 'done' may be out of order too; the totals are exact for the ranges finished.
+    private static class Progress {
+        private final Consumer<Map<String,UserTotals>> onRange;
+        private final Map<String,UserTotals> done = new HashMap<>();
+        volatile RuntimeException abandoned;   // what onRange threw; every task stops once it is set
+
+        Progress(Consumer<Map<String,UserTotals>> onRange) { this.onRange = onRange; }
+
+        // Between ranges and at each chunk of one.
+        void check() {
+            if (abandoned != null) throw new CancellationException();
+        }
+
+        synchronized void rangeDone(Map<String,UserTotals> users) {
+            check();
+            // Copies without session postings: the range's own totals are still merged into the result later.
+            for (Map.Entry<String,UserTotals> e : users.entrySet()) done.merge(e.getKey(), e.getValue().copy(), UserTotals::merge);
+            try {
+                onRange.accept(done);
+            } catch (RuntimeException ex) {
+                abandoned = ex;
+                throw ex;
+            }
+        }
+    }
+
+    private static class RangeTask extends RecursiveTask<Range> {
+        private static final long serialVersionUID = 1L;   // ForkJoinTask is Serializable; tasks are never serialized
+        private final FileChannel ch;
+        private final long[] cuts;
+        private final int lo, hi;          // ranges cuts[lo..hi)
+        private final String firstUser;    // header user before cuts[lo] (only the first range can inherit one)
+        private final boolean firstSealed;
+        private final Progress progress;   // null when nobody is watching
+
+        RangeTask(FileChannel ch, long[] cuts, int lo, int hi, String firstUser, boolean firstSealed, Progress progress) {
+            this.ch = ch; this.cuts = cuts; this.lo = lo; this.hi = hi; this.firstUser = firstUser; this.firstSealed = firstSealed;
+            this.progress = progress;
+        }
+
+        @Override protected Range compute() {
+            if (hi - lo == 1) return parse();
+            int mid = (lo + hi) >>> 1;
+            RangeTask right = new RangeTask(ch, cuts, mid, hi, null, false, progress);
+            right.fork();
+            Range l = new RangeTask(ch, cuts, lo, mid, firstUser, firstSealed, progress).compute();
+            Range r = right.join();
+            // Merge the smaller map into the larger one, always folding right (later) totals into left (earlier) ones.
+            if (l.users.size() >= r.users.size()) {
+                for (Map.Entry<String,UserTotals> e : r.users.entrySet()) l.users.merge(e.getKey(), e.getValue(), UserTotals::merge);
+            } else {
+                for (Map.Entry<String,UserTotals> e : l.users.entrySet()) r.users.merge(e.getKey(), e.getValue(), (later, earlier) -> earlier.merge(later));
+                l.users = r.users;
+            }
+            l.blocks.append(r.blocks);
+            l.skipped += r.skipped;
+            if (r.offset > r.start) { l.offset = r.offset; l.user = r.user; l.sealed = r.sealed; } // right range consumed something: its state wins
+            return l;
+        }
+
+        private Range parse() {
+            if (progress != null) progress.check();
+            HistoryIndex part = new HistoryIndex();
+            if (progress != null) part.onChunk = p -> progress.check();
+            part.tail.offset = cuts[lo];
+            part.tail.currentUser = firstUser;
+            part.tail.sealed = firstSealed;
+            // The inherited session's days, folded back by aggregate(). One byte early, so a header right at cuts[lo]
+            // still starts its own block.
+            if (firstUser != null) part.blocks.start(cuts[lo] - 1);
+            try {
+                MappedLogParser.parse(ch, cuts[hi], part.tail, part);
+            } catch (IOException ex) {
+                throw new UncheckedIOException(ex);
+            }
+            Range r = new Range(cuts[lo]);
+            r.offset = part.tail.offset;
+            r.user = part.tail.currentUser;
+            r.sealed = part.tail.sealed;
+            r.skipped = part.tail.skipped;
+            r.users = part.users;
+            r.blocks = part.blocks;
+            if (progress != null) progress.rangeDone(r.users);
+            return r;
+        }
+    }
+
+    // Range boundaries: 'from', then the first header line at or after each evenly spaced cut, then 'end'.
+    static long[] cuts(FileChannel ch, long from, long end) throws IOException {
+        long pieces = Math.max(1, Math.min(4L * ForkJoinPool.getCommonPoolParallelism(), (end - from) / MIN_RANGE));
+        List<Long> cuts = new ArrayList<>();
+        cuts.add(from);
+        for (long i = 1; i < pieces; i++) {
+            long last = cuts.get(cuts.size() - 1);
+            long nominal = Math.max(from + (end - from) * i / pieces, last + 1);
+            long c = nextHeader(ch, nominal, end);
+            if (c >= end) break;
+            cuts.add(c);
+        }
+        cuts.add(end);
+        long[] out = new long[cuts.size()];
+        for (int i = 0; i < out.length; i++) out[i] = cuts.get(i);
+        return out;
+    }
+
+    // First position >= pos that starts a line beginning with the session header, or 'end' if none.
+    static long nextHeader(FileChannel ch, long pos, long end) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(1 << 16);
+        long base = pos - 1; // include the byte before pos so "\n=== Session for " can match right at pos
+        while (base + NL_HEADER.length <= end) {
+            buf.clear();
+            buf.limit((int) Math.min(buf.capacity(), end - base));
+            int n = 0;
+            while (buf.hasRemaining()) {
+                int r = ch.read(buf, base + n);
+                if (r < 0) break;
+                n += r;
+            }
+            for (int i = 0; i + NL_HEADER.length <= n; i++) {
+                int j = 0;
+                while (j < NL_HEADER.length && buf.get(i + j) == NL_HEADER[j]) j++;
+                if (j == NL_HEADER.length) return base + i + 1;
+            }
+            if (n < NL_HEADER.length) break;
+            base += n - NL_HEADER.length + 1; // overlap so a match spanning two reads is not missed
+        }
+        return end;
+    }
+}
@@ -0,0 +1,36 @@
+// ResultCache
+package xptracker;
+
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+//                                                                 Per-user lookup results, each valid for one version (length + mtime) of its log
+// Repeat History lookups are answered from here without touching the file or waiting for the index lock.
+// Access-ordered with a fixed bound, so looking up many users never grows it past MAX_USERS.
+// Versions are kept per result because in shard mode every user has their own log file.
+class ResultCache {
+    static final int MAX_USERS = 64;
+    private static class Result {
+        final long length, mtime;  // log version the totals describe
+        final UserTotals totals;
+        Result(long length, long mtime, UserTotals totals) { this.length = length; this.mtime = mtime; this.totals = totals; }
+    }
+    private final LinkedHashMap<String,Result> results = new LinkedHashMap<String,Result>(16, 0.75f, true) {
+        @Override protected boolean removeEldestEntry(Map.Entry<String,Result> eldest) { return size() > MAX_USERS; }
+    };
+
+    // Cached totals for this user if their log is still at the version they were computed for, else null.
+    synchronized UserTotals get(String user, File log) {
+        String key = HistoryIndex.userKey(user);
+        Result r = results.get(key);
+        if (r == null) return null;
+        long m = log.lastModified();
+        if (log.length() != r.length || m != r.mtime) { results.remove(key); return null; }
+        return r.totals;
+    }
+
+    synchronized void put(String user, long logLength, long logMtime, UserTotals t) {
+        results.put(HistoryIndex.userKey(user), new Result(logLength, logMtime, t));
+    }
+}
@@ -0,0 +1,297 @@
+// SessionJournal
+package xptracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+import java.util.zip.CRC32;
+
+//                                                          Crash journal (xp_journal.*.wal): unsaved entries, written as they are added
+// MAGIC, then records = int length | int CRC32 of the payload | payload. The first record is the journal's generation
+// (8 bytes), every later one an entry (its CSV line, UTF-8); entries are numbered 1, 2, ... within a generation.
+// A background thread does all the writing and fsyncing, so adding an entry on the EDT only queues it.
+// A save stamps its session in the log with a Mark (this generation, entries journaled so far). Once the save is on
+// disk the journal is rewritten as a new generation holding only what is still unsaved: a temp file moved over the
+// old one, so a crash leaves one or the other. At the next launch the entries covered by the log's latest stamp of
+// this generation are dropped (a crash between the save and the rewrite), and the rest are replayed into that session.
+class SessionJournal {
+    enum Sync { ALWAYS, PERIODIC, NEVER }     // fsync after every batch / at most every PERIODIC_MS / leave it to the OS
+    private static final byte[] MAGIC = { 'X', 'P', 'J', 2 };   // version 1 had no generation record (still replayed)
+    private static final long PERIODIC_MS = 1000;
+    private static final int MAX_RECORD = 1 << 16;
+    private static final Object CLOSE = new Object();   // queued command besides entries and Resets
+
+    // "The first 'count' entries of journal generation 'generation' are saved", as written into a session header.
+    static final class Mark {
+        final long generation;
+        final long count;
+        Mark(long generation, long count) { this.generation = generation; this.count = count; }
+
+        @Override public String toString() { return Long.toHexString(generation) + ":" + count; }
+
+        // The inverse of toString(), or null if 's' is not one.
+        static Mark parse(String s) {
+            int colon = s.indexOf(':');
+            try {
+                return (colon <= 0) ? null : new Mark(Long.parseUnsignedLong(s.substring(0, colon), 16), Long.parseLong(s.substring(colon + 1)));
+            } catch (NumberFormatException ex) {
+                return null;
+            }
+        }
+    }
+
+    // Queued by reset(): start 'generation' with just these entries.
+    private static final class Reset {
+        final long generation;
+        final List<ActivityEntry> entries;
+        Reset(long generation, List<ActivityEntry> entries) { this.generation = generation; this.entries = entries; }
+    }
+
+    private final File file;
+    private final FileChannel lock;           // <journal>.lock, held while open (the journal itself is replaced on reset)
+    private FileChannel ch;                   // writer thread only, once the constructor returns
+    private final Sync sync;
+    private final Consumer<IOException> onError;
+    private final LinkedBlockingQueue<Object> queue = new LinkedBlockingQueue<>();
+    private final List<ActivityEntry> recovered = new ArrayList<>();
+    private final Thread writer;
+    private volatile boolean failed = false;
+    private long generation;                  // the journal as append()/reset() have left it (caller's thread)
+    private long appended;                    // entries in this generation
+
+    // -Dxptracker.journal.fsync=always|periodic|never (default periodic).
+    static Sync syncPolicy() {
+        String p = System.getProperty("xptracker.journal.fsync", "periodic");
+        for (Sync s : Sync.values()) if (s.name().equalsIgnoreCase(p)) return s;
+        return Sync.PERIODIC;
+    }
+
+    // Opens (or creates) the journal and reads back what a previous run left in it that 'log' does not have yet.
+    SessionJournal(File file, String user, File log, Sync sync, Consumer<IOException> onError) throws IOException {
+        this.file = file;
+        this.sync = sync;
+        this.onError = onError;
+        lock = FileChannel.open(new File(file.getPath() + ".lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+        try {
+            if (lock.tryLock() == null) throw new IOException("it is in use by another XP Tracker window for this user");
+            ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+            if (!replay(user, log)) {   // new, older format, or saved entries to drop
+                generation = newGeneration();
+                appended = recovered.size();
+                rewrite(generation, recovered);
+            }
+        } catch (IOException ex) {
+            if (ch != null) ch.close();
+            lock.close();
+            throw ex;
+        }
+        ch.position(ch.size());
+        writer = new Thread(this::run, "xp-journal");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    // Entries journaled by the previous run that were never saved.
+    List<ActivityEntry> recovered() { return recovered; }
+
+    void append(ActivityEntry e) {
+        if (failed) return;
+        queue.add(e);
+        appended++;
+    }
+
+    // Everything journaled so far except 'unsaved' has been saved to the log: keep only those (a new generation).
+    void reset(List<ActivityEntry> unsaved) {
+        if (failed) return;
+        generation = newGeneration();
+        appended = unsaved.size();
+        queue.add(new Reset(generation, new ArrayList<>(unsaved)));
+    }
+
+    // Stamp for a save of every entry journaled so far (null once the journal has failed: its numbering is unknown).
+    Mark mark() { return failed ? null : new Mark(generation, appended); }
+
+    // Write out what is queued and stop the writer (called on exit).
+    void close() {
+        queue.add(CLOSE);
+        try {
+            writer.join();
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+        }
+        try { lock.close(); } catch (IOException ignore) { }
+    }
+
+    private static long newGeneration() { return ThreadLocalRandom.current().nextLong(); }
+
+    // Fills 'recovered' and truncates a torn tail. Returns false if the journal should be rewritten instead of
+    // appended to: it is empty or not a journal, is in the version 1 format, or starts with entries 'log' already has.
+    private boolean replay(String user, File log) throws IOException {
+        long size = ch.size();
+        ByteBuffer magic = ByteBuffer.allocate(MAGIC.length);
+        while (magic.hasRemaining() && ch.read(magic, magic.position()) >= 0) { }
+        if (magic.hasRemaining()) return false;
+        for (int i = 0; i < MAGIC.length - 1; i++) if (magic.get(i) != MAGIC[i]) return false;
+        int version = magic.get(MAGIC.length - 1);
+        if (version != 1 && version != 2) return false;
+        long pos = MAGIC.length;
+        if (version == 2) {
+            byte[] gen = record(pos, size);
+            if (gen == null || gen.length != 8) return false;
+            generation = ByteBuffer.wrap(gen).getLong();
+            pos += 8 + gen.length;
+        }
+        List<ActivityEntry> entries = new ArrayList<>();
+        for (byte[] payload; (payload = record(pos, size)) != null; pos += 8 + payload.length) {
+            String[] f = new String(payload, StandardCharsets.UTF_8).split(",");
+            try {
+                entries.add(new ActivityEntry(f[0], f[1], Integer.parseInt(f[2]), Integer.parseInt(f[3]), user));
+            } catch (RuntimeException ex) {
+                break; // checksum matched but not an entry: treat like a torn record
+            }
+        }
+        long saved = (version == 2 && !entries.isEmpty()) ? savedThrough(log, user, generation) : 0;
+        recovered.addAll(entries.subList((int) Math.min(saved, entries.size()), entries.size()));
+        if (version == 1 || saved > 0) return false;
+        ch.truncate(pos);
+        appended = entries.size();
+        return true;
+    }
+
+    // Payload of the complete, checksum-valid record at 'pos', or null.
+    private byte[] record(long pos, long size) throws IOException {
+        if (pos + 8 > size) return null;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (head.hasRemaining() && ch.read(head, pos + head.position()) >= 0) { }
+        int len = head.getInt(0);
+        if (len < 0 || len > MAX_RECORD || pos + 8 + len > size) return null;
+        ByteBuffer payload = ByteBuffer.allocate(len);
+        while (payload.hasRemaining() && ch.read(payload, pos + 8 + payload.position()) >= 0) { }
+        CRC32 crc = new CRC32();
+        crc.update(payload.array(), 0, len);
+        return ((int) crc.getValue() == head.getInt(4)) ? payload.array() : null;
+    }
+
+    // How many entries of 'generation' the log already has: the count of the latest stamp on a session of 'user',
+    // if it is of that generation. Reads the whole log, so it is only asked when there is something to replay.
+    static long savedThrough(File log, String user, long generation) throws IOException {
+        if (!log.exists()) return 0;
+        List<Long> sessions = new ArrayList<>();
+        try (FileChannel lc = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            LogTail.parse(lc, lc.size(), new LogTail(), new MappedLogParser.RecordSink() {
+                @Override public void record(String u, int epochDay, int categoryId, int minutes, int xp) { }
+                @Override public void session(String u, long offset) { if (u.equalsIgnoreCase(user)) sessions.add(offset); }
+            });
+            boolean xpb = XpbLog.isXpb(lc);
+            for (int i = sessions.size() - 1; i >= 0; i--) {
+                Mark m = xpb ? XpbLog.journalMark(lc, sessions.get(i)) : MappedLogParser.journalMark(lc, sessions.get(i));
+                if (m != null) return (m.generation == generation) ? m.count : 0;
+            }
+        }
+        return 0;
+    }
+
+    private void run() {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        List<Object> batch = new ArrayList<>();
+        long lastSync = System.currentTimeMillis();
+        boolean dirty = false;   // written but not yet forced
+        try {
+            while (true) {
+                // Periodic mode wakes up to force a batch that is still unsynced when the interval is up.
+                Object first = (dirty && sync == Sync.PERIODIC)
+                        ? queue.poll(Math.max(1, lastSync + PERIODIC_MS - System.currentTimeMillis()), TimeUnit.MILLISECONDS)
+                        : queue.take();
+                if (first != null) batch.add(first);
+                queue.drainTo(batch);   // everything added meanwhile goes out in the same write
+                boolean closing = false;
+                for (Object o : batch) {
+                    if (o == CLOSE) { closing = true; break; }
+                    if (o instanceof Reset) {
+                        buf.reset();   // entries of the generation being replaced: the Reset lists those still unsaved
+                        Reset r = (Reset) o;
+                        rewrite(r.generation, r.entries);
+                        dirty = false;
+                        continue;
+                    }
+                    write(out, crc, ((ActivityEntry) o).toCSV().getBytes(StandardCharsets.UTF_8));
+                }
+                batch.clear();
+                if (buf.size() > 0) { write(buf); dirty = true; }
+                long now = System.currentTimeMillis();
+                if (dirty && sync != Sync.NEVER && (sync == Sync.ALWAYS || closing || now - lastSync >= PERIODIC_MS)) {
+                    ch.force(false);
+                    lastSync = now;
+                    dirty = false;
+                }
+                if (closing) break;
+            }
+        } catch (IOException ex) {
+            failed = true;
+            onError.accept(ex);
+        } catch (InterruptedException ex) {
+            // shutting down
+        } finally {
+            try { ch.close(); } catch (IOException ignore) { }
+        }
+    }
+
+    // Replace the journal with 'gen' holding just 'entries': written to <journal>.tmp, forced (unless Sync.NEVER)
+    // and moved over the journal, so a crash at any point leaves either the old generation or the new one.
+    private void rewrite(long gen, List<ActivityEntry> entries) throws IOException {
+        CRC32 crc = new CRC32();
+        ByteArrayOutputStream buf = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(buf);
+        out.write(MAGIC);
+        write(out, crc, ByteBuffer.allocate(8).putLong(0, gen).array());
+        for (ActivityEntry e : entries) write(out, crc, e.toCSV().getBytes(StandardCharsets.UTF_8));
+        File tmp = new File(file.getPath() + ".tmp");
+        boolean moved = false;
+        try {
+            try (FileChannel t = FileChannel.open(tmp.toPath(), StandardOpenOption.CREATE, StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE)) {
+                ByteBuffer b = ByteBuffer.wrap(buf.toByteArray());
+                while (b.hasRemaining()) t.write(b);
+                if (sync != Sync.NEVER) t.force(false);
+            }
+            ch.close();   // closed first: Windows cannot replace a file that is still open
+            try {
+                Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.ATOMIC_MOVE);
+                moved = true;
+            } finally {
+                ch = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE);
+                ch.position(ch.size());
+            }
+        } finally {
+            if (!moved) tmp.delete();
+        }
+    }
+
+    private static void write(DataOutputStream out, CRC32 crc, byte[] payload) throws IOException {
+        crc.reset();
+        crc.update(payload, 0, payload.length);
+        out.writeInt(payload.length);
+        out.writeInt((int) crc.getValue());
+        out.write(payload);
+    }
+
+    private void write(ByteArrayOutputStream buf) throws IOException {
+        ByteBuffer b = ByteBuffer.wrap(buf.toByteArray());
+        while (b.hasRemaining()) ch.write(b);
+        buf.reset();
+    }
+}
@@ -0,0 +1,207 @@
+// ShardStore
+package xptracker;
+
+import java.io.BufferedReader;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+//                                                             Per-user shards (xp_logs/): one log per user + a manifest listing them
+// With -Dxptracker.storage=shards each user's sessions go to their own file, so loading one user's history
+// never reads anyone else's bytes. Shard names are the case-folded user key with anything outside [a-z0-9_-]
+// %-escaped (UTF-8), so two spellings of one name share a shard and every name is a safe file name.
+class ShardStore {
+    static final File DIR = DataFiles.file("xp_logs");
+    static final File MANIFEST = new File(DIR, "manifest.txt");
+    private static final String MAGIC = "XPTracker shards v1";
+    private static final int MAX_NAME = 96;            // longer keys are cut and suffixed with a CRC of the whole key
+    private static final int FLUSH_BYTES = 8 << 20;    // migration: buffered shard bytes before writing them out
+
+    static File shard(String user, String ext) { return new File(DIR, fileName(user) + ext); }
+
+    static String fileName(String user) {
+        String key = HistoryIndex.userKey(user);
+        StringBuilder sb = new StringBuilder("u-");
+        for (byte b : key.getBytes(StandardCharsets.UTF_8)) {
+            if ((b >= 'a' && b <= 'z') || (b >= '0' && b <= '9') || b == '_' || b == '-') sb.append((char) b);
+            else sb.append('%').append(String.format("%02X", b & 0xFF));
+        }
+        if (sb.length() > MAX_NAME) {
+            CRC32 crc = new CRC32();
+            crc.update(key.getBytes(StandardCharsets.UTF_8));
+            sb.setLength(MAX_NAME);
+            sb.append('~').append(Long.toHexString(crc.getValue()));
+        }
+        return sb.toString();
+    }
+
+    // Shard file name -> user key, as listed in the manifest (empty if there is none yet).
+    static synchronized Map<String,String> manifest() throws IOException {
+        Map<String,String> shards = new LinkedHashMap<>();
+        if (!MANIFEST.exists()) return shards;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(MANIFEST), StandardCharsets.UTF_8))) {
+            if (!MAGIC.equals(br.readLine())) throw new IOException("unrecognized " + MANIFEST);
+            String line;
+            while ((line = br.readLine()) != null) {
+                int tab = line.indexOf('\t');
+                if (tab > 0) shards.put(line.substring(0, tab), line.substring(tab + 1));
+            }
+        }
+        return shards;
+    }
+
+    // Add a user's shard to the manifest if it is not listed yet (under a file lock: other instances may register too).
+    @SuppressWarnings("try") // the lock is only held for the try block
+    static synchronized void register(String user, File shard) throws IOException {
+        try (FileChannel lockFile = FileChannel.open(new File(DIR, "manifest.lock").toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE);
+             FileLock lock = lockFile.lock()) {
+            Map<String,String> shards = manifest();
+            if (shards.containsKey(shard.getName())) return;
+            shards.put(shard.getName(), HistoryIndex.userKey(user));
+            writeManifest(MANIFEST, shards);
+        }
+    }
+
+    private static void writeManifest(File file, Map<String,String> shards) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try (PrintWriter out = new PrintWriter(new OutputStreamWriter(new FileOutputStream(tmp), StandardCharsets.UTF_8))) {
+            out.println(MAGIC);
+            for (Map.Entry<String,String> s : shards.entrySet()) out.println(s.getKey() + "\t" + s.getValue());
+            if (out.checkError()) throw new IOException("could not write " + tmp);
+        }
+        Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    // One-shot split of a combined log into shards. Runs only while there is no manifest; the shards are built
+    // in a scratch directory that is renamed into place at the end, so an interrupted run just starts over.
+    // The combined log itself is left untouched. The whole run holds the combined log's append lock (it lives
+    // outside DIR, which is replaced): a second instance waits, then finds the manifest and does nothing.
+    @SuppressWarnings("try") // the lock is only held for the try block
+    static synchronized boolean migrate(File combined, String ext) throws IOException {
+        if (MANIFEST.exists() || !combined.exists()) return false;
+        try (FileChannel lock = LogWriter.lockAppends(combined)) {
+            if (MANIFEST.exists()) return false; // another instance migrated while we waited
+            File scratch = new File(DIR.getPath() + ".tmp");
+            if (scratch.exists()) {
+                File[] stale = scratch.listFiles();
+                if (stale != null) for (File f : stale) Files.delete(f.toPath());
+            } else if (!scratch.mkdirs()) {
+                throw new IOException("could not create " + scratch);
+            }
+            Map<String,String> shards = new LinkedHashMap<>();
+            boolean xpb;
+            try (FileChannel ch = FileChannel.open(combined.toPath(), StandardOpenOption.READ)) { xpb = XpbLog.isXpb(ch); }
+            if (xpb) splitXpb(combined, scratch, ext, shards);
+            else splitText(combined, scratch, ext, shards);
+            writeManifest(new File(scratch, MANIFEST.getName()), shards);
+
+            if (DIR.exists()) {
+                // Only happens if the manifest was deleted by hand: don't guess which shards are current.
+                File[] existing = DIR.listFiles();
+                if (existing != null && existing.length > 0) throw new IOException(DIR + " already has files but no manifest");
+                Files.delete(DIR.toPath());
+            }
+            Files.move(scratch.toPath(), DIR.toPath());
+            return true;
+        }
+    }
+
+    // Copy every session verbatim (header included) into its user's shard. Lines outside a session never counted
+    // toward anyone and are dropped. Bytes pass through as ISO-8859-1 so the shard is byte-identical to the source.
+    private static void splitText(File combined, File into, String ext, Map<String,String> shards) throws IOException {
+        Map<String,ByteArrayOutputStream> pending = new LinkedHashMap<>();
+        long buffered = 0;
+        ByteArrayOutputStream current = null;
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(new FileInputStream(combined), StandardCharsets.ISO_8859_1), 1 << 16)) {
+            String line;
+            while ((line = br.readLine()) != null) {
+                int eq = line.indexOf('=');
+                if (eq > 0 && line.startsWith(MappedLogParser.HEADER_PREFIX, eq)) line = line.substring(eq); // torn line + header: keep the header
+                if (line.startsWith(MappedLogParser.HEADER_PREFIX)) {
+                    String user = headerUser(line);
+                    current = null;
+                    if (user != null) {
+                        String name = fileName(user) + ext;
+                        shards.putIfAbsent(name, HistoryIndex.userKey(user));
+                        current = pending.computeIfAbsent(name, k -> new ByteArrayOutputStream());
+                    }
+                }
+                if (current == null) continue;
+                byte[] b = line.getBytes(StandardCharsets.ISO_8859_1);
+                current.write(b, 0, b.length);
+                current.write('\n');
+                buffered += b.length + 1;
+                if (buffered >= FLUSH_BYTES) { flush(into, pending); buffered = 0; }
+            }
+        }
+        flush(into, pending);
+    }
+
+    // Same rule as MappedLogParser: the name between "=== Session for " and the first " on " after it.
+    private static String headerUser(String line) {
+        String raw = line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+        int start = MappedLogParser.HEADER_PREFIX.length();
+        int onIdx = raw.indexOf(" on ", start);
+        if (onIdx <= start) return null;
+        return new String(raw.substring(start, onIdx).trim().getBytes(StandardCharsets.ISO_8859_1), Charset.defaultCharset());
+    }
+
+    private static void flush(File dir, Map<String,ByteArrayOutputStream> pending) throws IOException {
+        for (Map.Entry<String,ByteArrayOutputStream> p : pending.entrySet()) {
+            if (p.getValue().size() == 0) continue;
+            try (FileOutputStream out = new FileOutputStream(new File(dir, p.getKey()), true)) { p.getValue().writeTo(out); }
+            p.getValue().reset();
+        }
+    }
+
+    // Binary logs: regroup the entries per user and write them as new blocks.
+    private static void splitXpb(File combined, File into, String ext, Map<String,String> shards) throws IOException {
+        Map<String,List<ActivityEntry>> pending = new LinkedHashMap<>();
+        int[] buffered = { 0 };
+        try (FileChannel ch = FileChannel.open(combined.toPath(), StandardOpenOption.READ)) {
+            XpbLog.scan(ch, ch.size(), new LogTail(), new MappedLogParser.RecordSink() {
+                @Override public void record(String user, int epochDay, int categoryId, int minutes, int xp) {
+                    String name = fileName(user) + ext;
+                    shards.putIfAbsent(name, HistoryIndex.userKey(user));
+                    pending.computeIfAbsent(name, k -> new ArrayList<>())
+                           .add(new ActivityEntry(MappedLogParser.dateString(epochDay), Categories.name(categoryId), minutes, xp, user));
+                    buffered[0]++;
+                }
+                @Override public void chunkDone(long offset) {
+                    if (buffered[0] < FLUSH_BYTES / 32) return;
+                    try { flushXpb(into, pending); } catch (IOException ex) { throw new UncheckedIOException(ex); }
+                    buffered[0] = 0;
+                }
+            });
+        } catch (UncheckedIOException ex) {
+            throw ex.getCause();
+        }
+        flushXpb(into, pending);
+    }
+
+    private static void flushXpb(File dir, Map<String,List<ActivityEntry>> pending) throws IOException {
+        for (Map.Entry<String,List<ActivityEntry>> p : pending.entrySet()) {
+            if (p.getValue().isEmpty()) continue;
+            XpbLog.append(new File(dir, p.getKey()), p.getValue());
+            p.getValue().clear();
+        }
+    }
+}
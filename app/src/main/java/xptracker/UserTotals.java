@@ -0,0 +1,79 @@
+// UserTotals
+package xptracker;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+//                                                                 Per-user saved totals + last few entries (one row of the index)
+class UserTotals {
+    static final int RECENT = 10;                                           // entries kept for "Most recent entries"
+    int entries;                                                            // number of saved entries
+    int totalXP;                                                            // sum of saved XP
+    long[] xpByCategory = new long[Categories.count()];                     // saved XP per category id
+    // Ring of the newest RECENT entries as primitives (no object per parsed record).
+    final int[] recentDay = new int[RECENT], recentCat = new int[RECENT], recentMin = new int[RECENT], recentXp = new int[RECENT];
+    int recentCount = 0, recentNext = 0;
+    // Posting list: byte offsets of this user's "=== Session for" headers (or .xpb blocks), in log order.
+    long[] sessions = new long[0];
+    int sessionCount = 0;
+    DailySeries daily;   // per-day sums; only for users the index tracks (null = not kept or needs a rebuild)
+
+    void add(int epochDay, int categoryId, int minutes, int xp) {
+        entries++;
+        totalXP += xp;
+        xpByCategory = Categories.add(xpByCategory, categoryId, xp);
+        remember(epochDay, categoryId, minutes, xp);
+        if (daily != null) daily.add(epochDay, categoryId, minutes, xp);
+    }
+    void add(ActivityEntry e) {
+        add(MappedLogParser.epochDay(e.date), Categories.id(e.category), e.minutes, e.xp);
+    }
+
+    void remember(int epochDay, int categoryId, int minutes, int xp) {
+        recentDay[recentNext] = epochDay; recentCat[recentNext] = categoryId;
+        recentMin[recentNext] = minutes;  recentXp[recentNext] = xp;
+        recentNext = (recentNext + 1) % RECENT;
+        if (recentCount < RECENT) recentCount++;
+    }
+
+    // The remembered entries, oldest first.
+    List<ActivityEntry> recentEntries(String user) {
+        List<ActivityEntry> out = new ArrayList<>(recentCount);
+        for (int i = 0, slot = (recentNext - recentCount + RECENT) % RECENT; i < recentCount; i++, slot = (slot + 1) % RECENT) {
+            out.add(new ActivityEntry(MappedLogParser.dateString(recentDay[slot]), Categories.name(recentCat[slot]),
+                    recentMin[slot], recentXp[slot], user));
+        }
+        return out;
+    }
+
+    void addSession(long offset) {
+        if (sessionCount == sessions.length) sessions = Arrays.copyOf(sessions, Math.max(8, 2 * sessionCount));
+        sessions[sessionCount++] = offset;
+    }
+    long[] sessions() { return Arrays.copyOf(sessions, sessionCount); }
+
+    // Totals, recent entries and daily sums (the posting list stays with the index).
+    UserTotals copy() {
+        UserTotals c = new UserTotals().mergeTotals(this);
+        c.daily = (daily == null) ? null : daily.copy();
+        return c;
+    }
+    // Fold in totals that come after ours in the log (their recent entries and sessions are newer).
+    UserTotals merge(UserTotals o) {
+        mergeTotals(o);
+        for (int i = 0; i < o.sessionCount; i++) addSession(o.sessions[i]);
+        if (daily != null && o.daily != null) daily.addAll(o.daily);
+        else daily = null; // one side did not keep them: rebuilt from the posting list when next asked for
+        return this;
+    }
+    private UserTotals mergeTotals(UserTotals o) {
+        entries += o.entries;
+        totalXP += o.totalXP;
+        for (int c = 0; c < o.xpByCategory.length; c++) xpByCategory = Categories.add(xpByCategory, c, o.xpByCategory[c]);
+        for (int i = 0, slot = (o.recentNext - o.recentCount + RECENT) % RECENT; i < o.recentCount; i++, slot = (slot + 1) % RECENT) {
+            remember(o.recentDay[slot], o.recentCat[slot], o.recentMin[slot], o.recentXp[slot]);
+        }
+        return this;
+    }
+}
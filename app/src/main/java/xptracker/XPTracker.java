@@ -0,0 +1,256 @@
+// XPTracker
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.io.UncheckedIOException;
+import java.time.LocalDate;
+import java.time.format.DateTimeParseException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+//                                                                 Launcher: the window, or one headless query
+// With no arguments this starts XPTrackerGUI. With arguments it answers from the saved history and exits, printing
+// one JSON object per line:
+//
+//   --level USER                          level and XP toward the next one
+//   --query USER                          all-time totals, XP per category and the most recent entries
+//   --totals [USER] [--since D] [--until D]   totals for entries dated D..D (yyyy-mm-dd), every user if none is given
+//   --import FILE [--user NAME] [--map EXT=CAT,...] [--dry-run]
+//                                         add a CSV/JSON export from another tracker to the history (see BulkImport)
+//
+// Only the package's Swing-free classes are used (XPTrackerGUI is never loaded, so neither is any AWT or Swing class):
+// a query costs a JVM start plus reading the sidecar index, usually only the asked-for user's line. Entries not saved
+// yet (the window's current session or its crash journal) are not included. Exit status: 0 ok, 1 the history (or import file) could not be read, 2 bad arguments.
+public final class XPTracker {
+
+    private static final int XP_PER_LEVEL = 1000;       // same leveling as the Log & Stats tab
+    private static final long MAX_TAIL = 4L << 20;      // log bytes past the index that are read without updating it
+
+    private XPTracker() {}
+
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            XPTrackerGUI.main(args);
+            return;
+        }
+        int status;
+        try {
+            status = run(args, System.out);
+        } catch (IllegalArgumentException ex) {
+            System.err.println("xptracker: " + ex.getMessage());
+            System.err.println("usage: xptracker [--level USER | --query USER | --totals [USER] [--since yyyy-mm-dd] [--until yyyy-mm-dd]"
+                    + " | --import FILE [--user NAME] [--map name=CATEGORY,...] [--dry-run]]");
+            status = 2;
+        } catch (IOException | UncheckedIOException ex) {
+            System.err.println("xptracker: " + (args[0].equals("--import") ? "import failed: " : "could not read history: ") + ex.getMessage());
+            status = 1;
+        }
+        System.out.flush();
+        System.exit(status);
+    }
+
+    static int run(String[] args, PrintStream out) throws IOException {
+        String command = args[0], user = null, importUser = null;
+        int fromDay = Integer.MIN_VALUE, toDay = Integer.MAX_VALUE;
+        Map<String,String> map = new LinkedHashMap<>();
+        boolean dryRun = false;
+        for (int i = 1; i < args.length; i++) {
+            if (args[i].equals("--since") || args[i].equals("--until") || args[i].equals("--user") || args[i].equals("--map")) {
+                if (i + 1 == args.length) throw new IllegalArgumentException(args[i] + " needs a value");
+                String value = args[++i];
+                switch (args[i - 1]) {
+                    case "--since": fromDay = day(value); break;
+                    case "--until": toDay = day(value); break;
+                    case "--user": importUser = value; break;
+                    default: map(map, value);
+                }
+            } else if (args[i].equals("--dry-run")) {
+                dryRun = true;
+            } else if (user == null && !args[i].startsWith("--") && !args[i].trim().isEmpty()) {
+                user = args[i].trim();
+            } else {
+                throw new IllegalArgumentException("unexpected " + args[i]);
+            }
+        }
+        boolean ranged = fromDay != Integer.MIN_VALUE || toDay != Integer.MAX_VALUE;
+        if (!command.equals("--import") && (importUser != null || !map.isEmpty() || dryRun)) {
+            throw new IllegalArgumentException("--user, --map and --dry-run only go with --import");
+        }
+        switch (command) {
+            case "--level":
+            case "--query":
+                if (user == null) throw new IllegalArgumentException(command + " needs a user name");
+                if (ranged) throw new IllegalArgumentException(command + " is all-time; use --totals for a date range");
+                HistoryIndex idx = userIndex(user, false);
+                StringBuilder sb = new StringBuilder();
+                if (command.equals("--level")) level(sb, user, idx.get(user));
+                else query(sb, user, idx.get(user), idx.tail.skipped);
+                out.println(sb);
+                return 0;
+            case "--totals":
+                if (user != null) {
+                    out.println(totals(new StringBuilder(), user, userTotals(user, fromDay, toDay), fromDay, toDay));
+                } else {
+                    for (Map.Entry<String,UserTotals> u : allTotals(fromDay, toDay).entrySet()) {
+                        out.println(totals(new StringBuilder(), u.getKey(), u.getValue(), fromDay, toDay));
+                    }
+                }
+                return 0;
+            case "--import":
+                // 'user' is the file here
+                if (user == null) throw new IllegalArgumentException("--import needs a CSV or JSON file");
+                if (ranged) throw new IllegalArgumentException("--import takes no date range");
+                File input = new File(user);
+                if (!input.isFile()) throw new IllegalArgumentException("no such file " + user);
+                out.println(imported(new StringBuilder(), input, new BulkImport(importUser, map).run(input, dryRun), dryRun));
+                return 0;
+            default:
+                throw new IllegalArgumentException("unknown command " + command);
+        }
+    }
+
+    // "running=WORKOUT,reading=STUDY" into 'map'.
+    private static void map(Map<String,String> map, String pairs) {
+        for (String pair : pairs.split(",")) {
+            int eq = pair.indexOf('=');
+            if (eq <= 0 || eq == pair.length() - 1) throw new IllegalArgumentException("--map wants name=CATEGORY, not " + pair);
+            map.put(pair.substring(0, eq), pair.substring(eq + 1));
+        }
+    }
+
+    private static int day(String date) {
+        try {
+            return (int) LocalDate.parse(date).toEpochDay();
+        } catch (DateTimeParseException ex) {
+            throw new IllegalArgumentException("not a yyyy-mm-dd date: " + date);
+        }
+    }
+
+    //                                                                 Reading history (fastest path for each question)
+    // One user's index caught up with their log. Only their line of the index is read; if the log has grown a lot
+    // since the index was saved (or there is none), the whole index is brought up to date and saved instead,
+    // so the next query is quick again.
+    private static HistoryIndex userIndex(String user, boolean withSessions) throws IOException {
+        File log = DataFiles.log(user), indexFile = DataFiles.index(user);
+        HistoryIndex idx = HistoryIndex.load(indexFile, user, withSessions);
+        long behind = log.length() - idx.tail.offset;
+        if (behind >= 0 && behind <= MAX_TAIL) {
+            idx.catchUp(log);
+            return idx;
+        }
+        return HistoryIndex.refresh(HistoryIndex.load(indexFile), log, indexFile);
+    }
+
+    // One user's totals, dated fromDay..toDay; all-time totals come straight from the index.
+    private static UserTotals userTotals(String user, int fromDay, int toDay) throws IOException {
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) return userIndex(user, false).get(user);
+        HistoryIndex idx = userIndex(user, true); // their sessions, and the block index to skip those outside the range
+        try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, DataFiles.log(user), user, fromDay, toDay)) {
+            return records.collect(HistoryStream.totals());
+        }
+    }
+
+    // Everyone's totals by user key. All-time ones are in the index; a date range means one pass over the log.
+    private static Map<String,UserTotals> allTotals(int fromDay, int toDay) throws IOException {
+        Map<String,UserTotals> all = new TreeMap<>();
+        if (DataFiles.SHARDED) {
+            for (String key : ShardStore.manifest().values()) all.put(key, userTotals(key, fromDay, toDay));
+            return all;
+        }
+        File log = DataFiles.file(DataFiles.LOG_NAME);
+        if (fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE) {
+            File indexFile = DataFiles.file(DataFiles.INDEX_NAME);
+            all.putAll(HistoryIndex.refresh(HistoryIndex.load(indexFile), log, indexFile).users);
+        } else if (log.exists()) {
+            try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+                all.putAll(records.parallel().filter(r -> r.epochDay >= fromDay && r.epochDay <= toDay).collect(HistoryStream.totalsByUser()));
+            }
+        }
+        return all;
+    }
+
+    //                                                                 JSON output (one object per line)
+    private static void level(StringBuilder sb, String user, UserTotals t) {
+        sb.append("{\"user\":");
+        string(sb, user);
+        sb.append(",\"level\":").append(t.totalXP / XP_PER_LEVEL + 1)
+          .append(",\"totalXP\":").append(t.totalXP)
+          .append(",\"xpIntoLevel\":").append(t.totalXP % XP_PER_LEVEL)
+          .append(",\"xpPerLevel\":").append(XP_PER_LEVEL).append('}');
+    }
+
+    private static void query(StringBuilder sb, String user, UserTotals t, long damagedBytes) {
+        level(sb, user, t);
+        sb.setLength(sb.length() - 1);
+        sb.append(",\"entries\":").append(t.entries).append(",\"xpByCategory\":");
+        categories(sb, t.xpByCategory);
+        sb.append(",\"recent\":[");
+        boolean first = true;
+        for (ActivityEntry e : t.recentEntries(user)) {
+            if (!first) sb.append(',');
+            first = false;
+            sb.append("{\"date\":");
+            string(sb, e.date);
+            sb.append(",\"category\":");
+            string(sb, e.category);
+            sb.append(",\"minutes\":").append(e.minutes).append(",\"xp\":").append(e.xp).append('}');
+        }
+        sb.append("],\"damagedBytes\":").append(damagedBytes).append('}');
+    }
+
+    private static StringBuilder totals(StringBuilder sb, String user, UserTotals t, int fromDay, int toDay) {
+        sb.append("{\"user\":");
+        string(sb, user);
+        if (fromDay != Integer.MIN_VALUE) { sb.append(",\"since\":"); string(sb, LocalDate.ofEpochDay(fromDay).toString()); }
+        if (toDay != Integer.MAX_VALUE) { sb.append(",\"until\":"); string(sb, LocalDate.ofEpochDay(toDay).toString()); }
+        sb.append(",\"entries\":").append(t.entries).append(",\"totalXP\":").append(t.totalXP).append(",\"xpByCategory\":");
+        categories(sb, t.xpByCategory);
+        return sb.append('}');
+    }
+
+    private static StringBuilder imported(StringBuilder sb, File input, BulkImport.Result r, boolean dryRun) {
+        sb.append("{\"file\":");
+        string(sb, input.getPath());
+        sb.append(",\"dryRun\":").append(dryRun)
+          .append(",\"rows\":").append(r.rows)
+          .append(",\"rejected\":").append(r.rejected)
+          .append(",\"entries\":").append(r.entries)
+          .append(",\"duplicates\":").append(r.duplicates)
+          .append(",\"imported\":").append(r.imported)
+          .append(",\"sessions\":").append(r.sessions)
+          .append(",\"problems\":[");
+        for (int i = 0; i < r.problems.size(); i++) {
+            if (i > 0) sb.append(',');
+            string(sb, r.problems.get(i));
+        }
+        return sb.append("]}");
+    }
+
+    private static void categories(StringBuilder sb, long[] xpByCategory) {
+        sb.append('{');
+        boolean first = true;
+        for (int id = 0; id < xpByCategory.length; id++) {
+            if (xpByCategory[id] == 0) continue;
+            if (!first) sb.append(',');
+            first = false;
+            string(sb, Categories.name(id));
+            sb.append(':').append(xpByCategory[id]);
+        }
+        sb.append('}');
+    }
+
+    private static void string(StringBuilder sb, String s) {
+        sb.append('"');
+        for (int i = 0; i < s.length(); i++) {
+            char c = s.charAt(i);
+            if (c == '"' || c == '\\') sb.append('\\').append(c);
+            else if (c < 0x20) sb.append(String.format("\\u%04x", (int) c));
+            else sb.append(c);
+        }
+        sb.append('"');
+    }
+}
@@ -0,0 +1,1142 @@
+// XPTrackerGUI
+package xptracker;
+
+import javax.swing.*;
+import javax.swing.border.*;
+import java.awt.*;
+import java.awt.event.*;
+import java.io.*;
+import java.text.DecimalFormat;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.function.Consumer;
+import java.util.stream.Collector;
+import java.util.stream.Stream;
+
+public class XPTrackerGUI {
+
+    //                                                                                 Session totals (in memory for current run only) 
+    // multiplier: XP/minute for each category 
+    private final Map<String,Integer> multiplier = new LinkedHashMap<>();
+    private final List<ActivityEntry> log = new ArrayList<>();                 // current run entries not saved yet (saving moves them into hist*)
+    private long[] xpByCategory = new long[Categories.count()];               // current run XP per category id
+    private int totalXP = 0;                                                   // current run total XP
+    private int sessionEntries = 0;                                            // current run entry count (saved or not)
+    private String userName = "Player";                                        // from the startup username prompt
+
+    //                                                                                Baseline history (loaded from file for this user at startup) 
+    // These are the saved totals from previous sessions (plus whatever this run has saved); we add the unsaved entries to get "All-Time".
+    private long[] histXpByCategory = new long[Categories.count()];
+    private int histTotalXP = 0;
+    private int histEntries = 0;
+    private HistoryIndex historyIndex = new HistoryIndex();       // all users' saved history, kept in step with xp_log.txt (guarded by indexLock)
+    private final Object indexLock = new Object();                // index is read/written by background workers
+    private boolean baselineLoading = false;                      // hist* above are still partial
+    private final List<ActivityEntry> savedWhileLoading = new ArrayList<>(); // saves finished mid-load: shown on top of partial totals
+    private volatile long damagedBytes = 0;                       // damaged log bytes our index skipped (shown under All-Time)
+    private DailySeries daily = new DailySeries();                // per-day sums for this user: saved (from the index) + unsaved
+    private HistoryQuery historyQuery;                            // History tab lookup in flight, if any
+    private final ResultCache historyResults = new ResultCache(); // recent lookups, reused while the log is unchanged
+    private static final long PUBLISH_MS = 100;                   // min interval between partial results while loading
+    private SessionJournal journal;                               // unsaved entries on disk, replayed after a crash (null if it can't be opened)
+    // -Dxptracker.log.fsync=true forces each save to disk before it is reported as done;
+    // -Dxptracker.compress=true writes .xpb saves as compressed blocks.
+    private final LogWriter logWriter = new LogWriter(DataFiles.BINARY, DataFiles.SHARDED, Boolean.getBoolean("xptracker.log.fsync"), Boolean.getBoolean("xptracker.compress"));
+    private int submitted = 0;                                    // entries at the front of 'log' handed to logWriter, not yet confirmed
+    private final List<LogWriter.Batch> savesInFlight = new ArrayList<>();
+
+    //                                                                   UI components (fields so event handlers can reach them)
+    private JFrame frame;
+    private JComboBox<String> categoryBox;           // manual add: category picker
+    private JSpinner minutesSpinner;                 // manual add: minutes input (validation handled by parsing text due to issue with with JSpinner validation)
+    private JTextArea statsArea, historyArea;        // displays All-Time stats and compiled history text
+    private JLabel levelLabel, totalXPLabel;         // summary labels above the stats
+    private JProgressBar progressBar;                // visual progress toward next level
+    private JTextField historyUserField;             // text field to search history for a username
+    private JComboBox<String> historyRangeBox;       // History date range: all time, this week/month/year or custom
+    private JTextField historyFromField, historyToField; // custom range bounds (yyyy-mm-dd, blank = open)
+
+    //                                                              Single live timer (prevents mulitiple timers running simultaneously)
+    private JComboBox<String> timerCategoryBox;      // category for the timer (locked while running)
+    private JLabel timerTimeLabel;                   // 00:00:00 display
+    private JButton timerStartPauseBtn;              // toggles start/pause
+    private JButton timerStopAddBtn;                 // stops and adds rounded minutes
+    private javax.swing.Timer timerTick;             // ticks every second on the EDT
+    private boolean timerRunning = false;            // timer state flag
+    private long timerElapsedSec = 0;                // elapsed seconds for the current timer run
+
+    //                                                                               Validation bounds for minutes
+    private static final int MIN_MIN = 1;            // user must enter at least 1 minute
+    private static final int MAX_MIN = ActivityEntry.MAX_MINUTES; // one chunk cannot exceed 300 minutes
+
+    //                                                                  Convert seconds to "hh:mm:ss" for the timer label.
+    private static String hms(long sec) {
+        long h = sec / 3600, m = (sec % 3600) / 60, s = sec % 60;
+        return String.format("%02d:%02d:%02d", h, m, s);
+    }
+
+    //                                                                                   Program entry point
+    public static void main(String[] args) {
+        try {
+            // Try to use Nimbus look & feel (nicer GUI), else fall back to system default (not all systems have Nimbus).
+            boolean set = false;
+            for (UIManager.LookAndFeelInfo info : UIManager.getInstalledLookAndFeels()) {
+                if ("Nimbus".equals(info.getName())) { UIManager.setLookAndFeel(info.getClassName()); set = true; break; }
+            }
+            if (!set) UIManager.setLookAndFeel(UIManager.getSystemLookAndFeelClassName());
+        } catch (Exception ignore) {}
+
+        // Swing must run on the Event Dispatch Thread (EDT); we build the GUI there.
+        SwingUtilities.invokeLater(() -> new XPTrackerGUI().start());
+    }
+
+    //                                                           Initial startup: get name, set multipliers, load baseline, build UI, show stats
+    private void start() {
+        // Prompt the user for a name (used in file headers and to filter their history).
+        String name = JOptionPane.showInputDialog(null, "Enter your name:", "XP Tracker", JOptionPane.QUESTION_MESSAGE);
+        for (String problem; name != null && (problem = LogWriter.userNameProblem(name.trim())) != null; ) {
+            // The log could not save this name (see LogWriter.userNameProblem), so ask again.
+            name = JOptionPane.showInputDialog(null, "That name can't be saved (" + problem + ").\nEnter your name:",
+                    "XP Tracker", JOptionPane.WARNING_MESSAGE);
+        }
+        if (name != null && !name.trim().isEmpty()) userName = name.trim();
+
+        defaultMultipliers();
+
+        // Build UI, keyboard shortcuts, and render initial stats.
+        buildUI();
+        installShortcuts();
+
+        // Prefill History with current user's all-time view so Level matches immediately (current level in history and Log & stats must match).
+        historyUserField.setText(userName);
+
+        // Entries a crashed or killed run never saved come back into this session.
+        openJournal();
+
+        // One background scan loads saved history for everyone; it fills in both the All-Time stats and the History tab as it goes.
+        loadUserHistoryBaseline(true);
+        updateStatsArea();
+    }
+
+    // Category XP-per-minute multipliers (you can adjust these to change leveling speed and catagory weight).
+    private void defaultMultipliers() {
+        multiplier.putAll(Categories.DEFAULT_MULTIPLIERS);
+    }
+
+    // The tabs' components without a window, journal or background loading, so the UI code can be driven headless
+    // (benchmarks). Swing components work without a display as long as nothing is shown.
+    void buildHeadless(String user) {
+        userName = user;
+        defaultMultipliers();
+        buildLogStatsPanel();
+        buildHistoryPanel();
+        historyUserField.setText(userName);
+    }
+
+    //                                                                  Open the crash journal and replay what the previous run left in it
+    private void openJournal() {
+        try {
+            journal = new SessionJournal(DataFiles.journal(userName), userName, DataFiles.log(userName), SessionJournal.syncPolicy(), ex ->
+                    SwingUtilities.invokeLater(() -> JOptionPane.showMessageDialog(frame,
+                            "Error writing the crash journal: " + ex.getMessage() + "\nUnsaved entries are only kept in memory until you save.",
+                            "Journal Error", JOptionPane.ERROR_MESSAGE)));
+        } catch (IOException ex) {
+            JOptionPane.showMessageDialog(frame, "Error opening the crash journal: " + ex.getMessage(),
+                    "Journal Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        List<ActivityEntry> recovered = journal.recovered();
+        if (recovered.isEmpty()) return;
+        for (ActivityEntry e : recovered) addEntry(e);
+        JOptionPane.showMessageDialog(frame,
+                "Recovered " + recovered.size() + " unsaved entries from the last run.\nSave to keep them in your history.",
+                "Recovered Session", JOptionPane.INFORMATION_MESSAGE);
+    }
+    //                                                                  Create the main window, tabs, and register an exit handler
+    private void buildUI() {
+        frame = new JFrame("XP Tracker — " + userName);
+        // Manage closing to support "Save before exit?" and "Add timer minutes?" prompts.
+        frame.setDefaultCloseOperation(WindowConstants.DO_NOTHING_ON_CLOSE); 
+        frame.addWindowListener(new WindowAdapter() {
+            @Override public void windowClosing(WindowEvent e) { attemptExit(); }
+        });
+        frame.setSize(900, 660);
+        frame.setLocationRelativeTo(null); // center on screen
+
+        JPanel root = new JPanel(new BorderLayout(12,12));
+        root.setBorder(BorderFactory.createEmptyBorder(14,14,14,14));
+        frame.setContentPane(root);
+
+        // Two tabs: "Log & Stats" (add time, current stats) and "History" (review totals).
+        JTabbedPane tabs = new JTabbedPane();
+        tabs.addTab("Log & Stats", buildLogStatsPanel());
+        tabs.addTab("History", buildHistoryPanel());
+        root.add(tabs, BorderLayout.CENTER);
+
+        frame.setVisible(true);
+    }
+
+    //                                                                 "Log & Stats" tab: manual add, single timer, and stats panel
+    private JPanel buildLogStatsPanel() {
+        JPanel page = new JPanel();
+        page.setLayout(new BoxLayout(page, BoxLayout.Y_AXIS));
+
+        JPanel controlsCard = cardPanel("Add Activity (Manual)");
+        controlsCard.add(buildControlsRow(), BorderLayout.CENTER);
+
+        JPanel timerCard = cardPanel("Live Timer (Single, by Category)");
+        timerCard.add(buildSingleTimerPanel(), BorderLayout.CENTER);
+
+        JPanel statsCard = cardPanel("All-Time Stats (History + This Session)");
+        statsCard.add(buildStatsArea(), BorderLayout.CENTER);
+
+        page.add(controlsCard); page.add(Box.createVerticalStrut(10));
+        page.add(timerCard);    page.add(Box.createVerticalStrut(10));
+        page.add(statsCard);
+
+        // Wrapper keeps content compact at the top.
+        JPanel wrapper = new JPanel(new BorderLayout());
+        wrapper.add(page, BorderLayout.NORTH); 
+        return wrapper;
+    }
+
+    //                                                                  History tab: choose a username and show compiled totals 
+    private JPanel buildHistoryPanel() {
+        JPanel panel = new JPanel(new BorderLayout(12,12));
+        JPanel historyCard = cardPanel("View Compiled History");
+
+        // Top row: Username to view:, text field, View History button
+        JPanel top = new JPanel(new BorderLayout(8,8));
+        historyUserField = new JTextField(userName, 18);
+        historyUserField.setToolTipText("Type a username to view all-time history from xp_log.txt (includes current session if it's your name)");
+        JButton viewHistoryBtn = primaryButton("View History", e -> viewHistoryByUser());
+        top.add(new JLabel("Username to view:"), BorderLayout.WEST);
+        top.add(historyUserField, BorderLayout.CENTER);
+        top.add(viewHistoryBtn, BorderLayout.EAST);
+
+        // Second row: date range. Presets fill in From/To; only "Custom" lets you type them.
+        JPanel rangeRow = new JPanel(new FlowLayout(FlowLayout.LEFT, 6, 0));
+        historyRangeBox = new JComboBox<>(new String[] { "All time", "This week", "This month", "This year", "Custom" });
+        historyFromField = new JTextField(10);
+        historyToField = new JTextField(10);
+        historyFromField.setToolTipText("First day (yyyy-mm-dd); leave blank for no lower bound");
+        historyToField.setToolTipText("Last day (yyyy-mm-dd); leave blank for no upper bound");
+        historyRangeBox.addActionListener(e -> fillHistoryRange());
+        fillHistoryRange();
+        rangeRow.add(new JLabel("Range:"));
+        rangeRow.add(historyRangeBox);
+        rangeRow.add(new JLabel("From:"));
+        rangeRow.add(historyFromField);
+        rangeRow.add(new JLabel("To:"));
+        rangeRow.add(historyToField);
+        top.add(rangeRow, BorderLayout.SOUTH);
+
+        // Big read-only area that shows totals, level, % to next level, and recent entries.
+        historyArea = new JTextArea(20, 70);
+        historyArea.setEditable(false);
+        historyArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        historyArea.setBorder(new EmptyBorder(6,6,6,6));
+
+        // Bottom row: log maintenance.
+        JPanel bottom = new JPanel(new FlowLayout(FlowLayout.RIGHT, 0, 0));
+        JButton compactBtn = new JButton("Compact Log...");
+        compactBtn.setToolTipText("Fold old sessions into one line per day and category (totals and levels stay the same)");
+        compactBtn.addActionListener(e -> compactLog());
+        bottom.add(compactBtn);
+
+        historyCard.add(top, BorderLayout.NORTH);
+        historyCard.add(new JScrollPane(historyArea), BorderLayout.CENTER);
+        historyCard.add(bottom, BorderLayout.SOUTH);
+
+        panel.add(historyCard, BorderLayout.CENTER);
+        return panel;
+    }
+
+    //                                                               Manual Add row: category, minutes, Add, Save (with strict validation) 
+    private JPanel buildControlsRow() {
+        JPanel controls = new JPanel(new GridBagLayout());
+        GridBagConstraints gc = new GridBagConstraints();
+        gc.insets = new Insets(6,6,6,6);
+        gc.fill = GridBagConstraints.HORIZONTAL;
+
+        // Label + category dropdown
+        JLabel categoryLabel = new JLabel("Category:");
+        gc.gridx = 0; gc.gridy = 0; gc.weightx = 0;
+        controls.add(categoryLabel, gc);
+
+        gc.gridx = 1; gc.weightx = 0.2;
+        categoryBox = new JComboBox<>(multiplier.keySet().toArray(new String[0]));
+        categoryBox.setToolTipText("STUDY, CODING, WORKOUT, WRITING");
+        controls.add(categoryBox, gc);
+
+        // Label + minutes spinner 
+        JLabel minutesLabel = new JLabel("Minutes:");
+        gc.gridx = 2; gc.weightx = 0;
+        controls.add(minutesLabel, gc);
+
+        gc.gridx = 3; gc.weightx = 0.2;
+        minutesSpinner = new JSpinner(new SpinnerNumberModel(30, MIN_MIN, MAX_MIN, 5));
+        minutesSpinner.setToolTipText("Enter minutes between " + MIN_MIN + " and " + MAX_MIN);
+        minutesSpinner.setEditor(new JSpinner.NumberEditor(minutesSpinner, "#"));
+
+        // Parse raw text because JSpinner reverts to last valid value on bad input.
+        JFormattedTextField tf = ((JSpinner.NumberEditor) minutesSpinner.getEditor()).getTextField();
+        tf.setInputVerifier(new InputVerifier() {
+            @Override public boolean verify(JComponent c) {
+                return readMinutesFromField(false) != null; // gate focus; no popup here
+            }
+        });
+        // When focus actually leaves the field (select history tab), show the error dialog if needed.
+        tf.addFocusListener(new FocusAdapter() {
+            @Override public void focusLost(FocusEvent e) { readMinutesFromField(true); }
+        });
+
+        controls.add(minutesSpinner, gc);
+
+        // Add Activity button, validates and adds one entry
+        gc.gridx = 4; gc.weightx = 0.3;
+        JButton addBtn = primaryButton("Add Activity  (Ctrl+A)", e -> handleAddActivity());
+        addBtn.setToolTipText("Add this session to the current log");
+        controls.add(addBtn, gc);
+
+        // Save Log, appends a session to xp_log.txt
+        gc.gridx = 5; gc.weightx = 0.15;
+        JButton saveBtn = new JButton("Save Log  (Ctrl+S)");
+        saveBtn.addActionListener(e -> saveLog());
+        saveBtn.setToolTipText("Append this session to xp_log.txt");
+        controls.add(saveBtn, gc);
+
+        return controls;
+    }
+
+    //                                                                 Single-category live timer row (Start/Pause, Stop & Add)
+    private JPanel buildSingleTimerPanel() {
+        JPanel row = new JPanel(new GridBagLayout());
+        GridBagConstraints gc = new GridBagConstraints();
+        gc.insets = new Insets(6,6,6,6);
+        gc.fill = GridBagConstraints.HORIZONTAL;
+
+        JLabel lbl = new JLabel("Timer Category:");
+        gc.gridx = 0; gc.gridy = 0; gc.weightx = 0;
+        row.add(lbl, gc);
+
+        timerCategoryBox = new JComboBox<>(multiplier.keySet().toArray(new String[0]));
+        timerCategoryBox.setToolTipText("Select the category you want to time");
+        gc.gridx = 1; gc.weightx = 0.25;
+        row.add(timerCategoryBox, gc);
+
+        // '00:00:00' elapsed time label
+        timerTimeLabel = new JLabel("00:00:00");
+        timerTimeLabel.setFont(new Font(Font.MONOSPACED, Font.BOLD, 13));
+        gc.gridx = 2; gc.weightx = 0.15;
+        row.add(timerTimeLabel, gc);
+
+        // Start or Pause the ticking 
+        timerStartPauseBtn = primaryButton("Start", e -> onTimerStartPause());
+        gc.gridx = 3; gc.weightx = 0.2;
+        row.add(timerStartPauseBtn, gc);
+
+        // Stop & Add converts elapsed seconds to rounded minutes and adds an entry
+        timerStopAddBtn = new JButton("Stop & Add");
+        timerStopAddBtn.addActionListener(e -> onTimerStopAndAdd());
+        timerStopAddBtn.setToolTipText("Stop the timer and add rounded minutes to the selected category");
+        gc.gridx = 4; gc.weightx = 0.2;
+        row.add(timerStopAddBtn, gc);
+
+        // Swing timer ticks once per second on the EDT
+        timerTick = new javax.swing.Timer(1000, e -> {
+            if (timerRunning) {
+                timerElapsedSec++;
+                timerTimeLabel.setText(hms(timerElapsedSec));
+            }
+        });
+        timerTick.setRepeats(true);
+
+        return row;
+    }
+
+    //                                                                       Stats panel (Level, Total XP, progress bar, and breakdown text)
+    private JPanel buildStatsArea() {
+        JPanel panel = new JPanel(new BorderLayout(8,8));
+
+        JPanel header = new JPanel(new GridLayout(1,3,8,8));
+        levelLabel = new JLabel("Level: 1");
+        levelLabel.setFont(levelLabel.getFont().deriveFont(Font.BOLD, 14f));
+        totalXPLabel = new JLabel("Total XP: 0");
+        totalXPLabel.setFont(totalXPLabel.getFont().deriveFont(Font.BOLD, 14f));
+
+        progressBar = new JProgressBar(0, 100);
+        progressBar.setStringPainted(true);
+        progressBar.setForeground(new Color(52, 152, 219));
+        header.add(levelLabel);
+        header.add(totalXPLabel);
+        header.add(progressBar);
+
+        statsArea = new JTextArea(12, 70);
+        statsArea.setEditable(false);
+        statsArea.setFont(new Font(Font.MONOSPACED, Font.PLAIN, 13));
+        statsArea.setBorder(new EmptyBorder(6,6,6,6));
+
+        panel.add(header, BorderLayout.NORTH);
+        panel.add(new JScrollPane(statsArea), BorderLayout.CENTER);
+        return panel;
+    }
+
+    //                                                                                 Styled helper so sections look consistent
+    private JPanel cardPanel(String title) {
+        JPanel card = new JPanel(new BorderLayout(10,10));
+        card.setOpaque(true);
+        card.setBackground(new Color(250, 250, 252));
+        Border outer = new LineBorder(new Color(225, 228, 235));
+        Border inner = new EmptyBorder(10,12,12,12);
+        TitledBorder titleBorder = BorderFactory.createTitledBorder(outer, title, TitledBorder.LEFT, TitledBorder.TOP);
+        titleBorder.setTitleFont(new Font("SansSerif", Font.BOLD, 13));
+        card.setBorder(new CompoundBorder(titleBorder, inner));
+        return card;
+    }
+
+    //                                                                          Timer: Start/Pause toggle (locks category while timing)
+    private void onTimerStartPause() {
+        if (!timerRunning) {
+            timerRunning = true;
+            timerTick.start();
+            timerStartPauseBtn.setText("Pause");
+            timerCategoryBox.setEnabled(false); // prevent mid-run category changes
+        } else {
+            timerRunning = false;
+            timerTick.stop();
+            timerStartPauseBtn.setText("Start");
+            // keep category locked until Stop & Add or resume (so timing remains honest)
+        }
+    }
+
+    //                                                                       Timer: Stop & Add (round seconds to minutes; add if ≥1; reset UI)
+    private void onTimerStopAndAdd() {
+        if (timerRunning) {
+            timerRunning = false;
+            timerTick.stop();
+            timerStartPauseBtn.setText("Start");
+        }
+        int minutes = (int) Math.round(timerElapsedSec / 60.0);
+        if (minutes < 1) {
+            JOptionPane.showMessageDialog(frame,
+                    "Timer is less than 1 minute. Nothing added.",
+                    "Timer", JOptionPane.INFORMATION_MESSAGE);
+        } else {
+            String cat = (String) timerCategoryBox.getSelectedItem();
+            addMinutesFromTimer(cat, minutes); // chunk + stats update
+            JOptionPane.showMessageDialog(frame,
+                    "Added: " + minutes + " minute(s) of " + cat + " for " + (minutes * multiplier.get(cat)) + " XP.",
+                    "Timer Added",
+                    JOptionPane.INFORMATION_MESSAGE);
+        }
+        // Reset the timer display and unlock the category dropdown for the next run.
+        timerElapsedSec = 0;
+        timerTimeLabel.setText("00:00:00");
+        timerCategoryBox.setEnabled(true);
+    }
+
+    //                                                                       Manual Add handler: validate minutes, add entry, confirm
+    private void handleAddActivity() {
+        Integer minutes = readMinutesFromField(true); // strict parsing of raw text, show error if bad
+        if (minutes == null) return;
+
+        String category = (String) categoryBox.getSelectedItem();
+        addMinutesFromTimer(category, minutes); // uses chunking + totals update
+
+        JOptionPane.showMessageDialog(frame,
+                "Added: " + minutes + " minute(s) of " + category + " for " + (minutes * multiplier.get(category)) + " XP.",
+                "Activity Added",
+                JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    /**
+     Strict manual-minutes validation:
+     Reads the spinner's raw text (digits only), not spinner.getValue() (avoids last valid value issue).
+     Enforces 1 to 300.
+     If valid, syncs the spinner to the accepted number and returns it; else shows an error and returns null.
+     */
+    private Integer readMinutesFromField(boolean showError) {
+        JFormattedTextField tf = ((JSpinner.NumberEditor) minutesSpinner.getEditor()).getTextField();
+        String raw = tf.getText().trim();
+        if (raw.isEmpty()) {
+            if (showError) showMinutesError("Enter minutes between " + MIN_MIN + " and " + MAX_MIN + ".");
+            return null;
+        }
+        int val;
+        try {
+            // Only whole numbers are allowed
+            val = Integer.parseInt(raw);
+        } catch (NumberFormatException ex) {
+            if (showError) showMinutesError("Minutes must be a whole number between " + MIN_MIN + " and " + MAX_MIN + ".");
+            return null;
+        }
+        if (val < MIN_MIN || val > MAX_MIN) {
+            if (showError) showMinutesError("Minutes must be between " + MIN_MIN + " and " + MAX_MIN + ".");
+            return null;
+        }
+        // Keep the spinner visually in sync with what we accepted.
+        try { minutesSpinner.setValue(val); } catch (IllegalArgumentException ignore) {}
+        return val;
+    }
+
+    //                                                         Add minutes helper: chunk >300 into legal pieces for computing XP; refresh stats
+    void addMinutesFromTimer(String category, int minutes) {
+        while (minutes > 0) {
+            int chunk = Math.min(minutes, MAX_MIN); // one persisted entry is at most 300 minutes
+            int xp = chunk * multiplier.get(category);
+            String date = LocalDate.now().toString();
+            ActivityEntry entry = new ActivityEntry(date, category, chunk, xp, userName);
+            addEntry(entry);
+            if (journal != null) journal.append(entry); // queued; written and fsynced off the EDT
+            minutes -= chunk; // consume this chunk and continue if anything remains
+        }
+        updateStatsArea();
+    }
+
+    // Count one entry toward the current session.
+    private void addEntry(ActivityEntry entry) {
+        log.add(entry);
+        sessionEntries++;
+        totalXP += entry.xp;
+        xpByCategory = Categories.add(xpByCategory, Categories.id(entry.category), entry.xp); // increment per-category XP
+        daily.add(entry);
+    }
+
+    //                                                Friendly error UX for minutes input: beep, brief highlight, and dialog
+    private void showMinutesError(String msg) {
+        Toolkit.getDefaultToolkit().beep();
+        JFormattedTextField tf = ((JSpinner.NumberEditor) minutesSpinner.getEditor()).getTextField();
+        Color old = tf.getBackground();
+        tf.setBackground(new Color(255, 235, 238)); // light red highlight
+
+        // Briefly flash, then restore background (Swing Timer runs on EDT).
+        javax.swing.Timer flash = new javax.swing.Timer(850, e -> {
+            tf.setBackground(old);
+            ((javax.swing.Timer) e.getSource()).stop();
+        });
+        flash.setRepeats(false);
+        flash.start();
+
+        JOptionPane.showMessageDialog(frame, msg, "Invalid Minutes", JOptionPane.ERROR_MESSAGE);
+        tf.requestFocusInWindow();
+        tf.selectAll(); // make it easy to retype
+    }
+
+    //                                                                Persist current session to xp_log.txt (header + CSV lines)
+    // Only entries added since the last save are handed over, so saving twice never writes an entry twice. The write
+    // itself happens on the log writer thread; saveFinished() runs on the EDT once the batch is on disk (or failed).
+    private void saveLog() {
+        if (log.size() == submitted) {
+            JOptionPane.showMessageDialog(frame, "Nothing to save yet.", "Save Log", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        List<ActivityEntry> entries = new ArrayList<>(log.subList(submitted, log.size()));
+        submitted = log.size(); // watermark: everything before it is saved or being saved
+        // The session is stamped with the journal's mark, so a crash before the journal is reset doesn't replay these
+        // entries. Not while another save is in flight: that one could still fail, and its entries are under the mark.
+        SessionJournal.Mark mark = (journal != null && savesInFlight.isEmpty()) ? journal.mark() : null;
+        LogWriter.Batch b = logWriter.submit(DataFiles.log(userName), userName, entries, mark);
+        savesInFlight.add(b);
+        b.done.whenComplete((ok, ex) -> SwingUtilities.invokeLater(() -> saveFinished(b)));
+    }
+
+    // A queued save completed: fold it into the baseline, or put its entries back with the unsaved ones.
+    private void saveFinished(LogWriter.Batch b) {
+        if (!savesInFlight.remove(b)) return; // already handled (exit finishes outstanding saves itself)
+        log.removeAll(b.entries);             // ActivityEntry has identity equality, so this removes exactly this batch
+        submitted -= b.entries.size();
+        try {
+            b.done.join();
+        } catch (CompletionException | CancellationException ex) {
+            log.addAll(submitted, b.entries); // unsaved again (the journal still has them)
+            Throwable cause = (ex.getCause() != null) ? ex.getCause() : ex;
+            JOptionPane.showMessageDialog(frame, "Error saving log: " + cause.getMessage(),
+                    "Save Error", JOptionPane.ERROR_MESSAGE);
+            return;
+        }
+        if (journal != null) {
+            // Keep only what is still unsaved in the journal.
+            journal.reset(log);
+        }
+
+        // Saved entries become part of the baseline. While it is still loading they may or may not be in the bytes
+        // being read, so they are also remembered and the load settles it (see loadUserHistoryBaseline).
+        if (baselineLoading) savedWhileLoading.addAll(b.entries);
+        for (ActivityEntry e : b.entries) {
+            histEntries++;
+            histTotalXP += e.xp;
+            histXpByCategory = Categories.add(histXpByCategory, Categories.id(e.category), e.xp);
+        }
+        updateStatsArea();
+        updateHistoryIndex();
+        JOptionPane.showMessageDialog(frame,
+                "Saved " + b.entries.size() + " entries to:\n" + b.file.getAbsolutePath(),
+                "Saved", JOptionPane.INFORMATION_MESSAGE);
+    }
+
+    // Exit: wait for saves still being written and handle their results right away.
+    private void finishSaves() {
+        logWriter.close();
+        for (LogWriter.Batch b : new ArrayList<>(savesInFlight)) saveFinished(b);
+    }
+
+    //                                                        Compact the log: fold sessions older than N days into daily totals
+    private void compactLog() {
+        Object input = JOptionPane.showInputDialog(frame,
+                "Fold sessions older than how many days into one line per day and category?\n" +
+                "XP, minutes and levels stay the same; older entries are merged.",
+                "Compact Log", JOptionPane.QUESTION_MESSAGE, null, null, "90");
+        if (input == null) return;
+        int days;
+        try {
+            days = Integer.parseInt(input.toString().trim());
+        } catch (NumberFormatException ex) {
+            days = -1;
+        }
+        if (days < 1) {
+            JOptionPane.showMessageDialog(frame, "Enter a whole number of days (1 or more).", "Compact Log", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        if (baselineLoading || !savesInFlight.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "Still loading or saving history; try again in a moment.", "Compact Log", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        File file = DataFiles.log(userName);
+        if (!file.exists()) {
+            JOptionPane.showMessageDialog(frame, "Nothing saved yet.", "Compact Log", JOptionPane.INFORMATION_MESSAGE);
+            return;
+        }
+        int cutoff = (int) LocalDate.now().minusDays(days).toEpochDay();
+        new SwingWorker<long[], Void>() {
+            @Override protected long[] doInBackground() throws IOException {
+                synchronized (indexLock) {
+                    long before = file.length();
+                    return new long[] { before, LogCompactor.compact(file, cutoff) };
+                }
+            }
+            @Override protected void done() {
+                try {
+                    long[] r = get();
+                    JOptionPane.showMessageDialog(frame,
+                            "Compacted " + file.getName() + ": " + (r[0] / 1024) + " KB -> " + (r[1] / 1024) + " KB",
+                            "Compact Log", JOptionPane.INFORMATION_MESSAGE);
+                } catch (InterruptedException | CancellationException ignore) {
+                    // never cancelled
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frame, "Error compacting log: " + ex.getCause().getMessage(),
+                            "Compact Error", JOptionPane.ERROR_MESSAGE);
+                }
+                loadUserHistoryBaseline(true); // entry counts changed (totals did not)
+            }
+        }.execute();
+    }
+
+    //                                                  Compile totals for any username; if it's the current user, merge unsaved current session
+    private void viewHistoryByUser() {
+        String filter = historyUserField.getText().trim();
+        if (filter.isEmpty()) {
+            JOptionPane.showMessageDialog(frame, "Enter a username to view.", "History", JOptionPane.WARNING_MESSAGE);
+            return;
+        }
+        int[] range = historyRange();
+        if (range == null) return;
+        // The log is read on a background thread; a lookup for a different name supersedes the one in flight.
+        if (historyQuery != null && !historyQuery.isDone()) {
+            if (historyQuery.filter.equalsIgnoreCase(filter) && historyQuery.fromDay == range[0] && historyQuery.toDay == range[1]) {
+                return; // same lookup already running
+            }
+            historyQuery.cancel(false);
+            historyQuery = null;
+        }
+        // Log unchanged since we last looked this user up: answer from memory.
+        UserTotals cached = allTime(range[0], range[1]) ? historyResults.get(filter, DataFiles.log(filter)) : null;
+        if (cached != null) {
+            showHistory(filter, cached, false);
+            return;
+        }
+        historyArea.setText("Loading history for " + filter + "...");
+        historyQuery = new HistoryQuery(filter, range[0], range[1]);
+        historyQuery.execute();
+    }
+
+    // Preset ranges fill in From/To (read-only); "Custom" keeps what was there and lets the user edit it.
+    private void fillHistoryRange() {
+        LocalDate today = LocalDate.now();
+        LocalDate from = null, to = null;
+        switch (historyRangeBox.getSelectedIndex()) {
+            case 1: from = today.minusDays(today.getDayOfWeek().getValue() - 1); to = from.plusDays(6); break;
+            case 2: from = today.withDayOfMonth(1); to = today.withDayOfMonth(today.lengthOfMonth()); break;
+            case 3: from = today.withDayOfYear(1); to = today.withDayOfYear(today.lengthOfYear()); break;
+            default: break;
+        }
+        boolean custom = historyRangeBox.getSelectedIndex() == 4;
+        if (!custom) {
+            historyFromField.setText(from == null ? "" : from.toString());
+            historyToField.setText(to == null ? "" : to.toString());
+        }
+        historyFromField.setEditable(custom);
+        historyToField.setEditable(custom);
+    }
+
+    // The selected range as inclusive epoch days {from, to} (open ends are MIN/MAX_VALUE), or null after telling the user why not.
+    private int[] historyRange() {
+        String from = historyFromField.getText().trim(), to = historyToField.getText().trim();
+        int f = from.isEmpty() ? Integer.MIN_VALUE : MappedLogParser.epochDay(from);
+        int t = to.isEmpty() ? Integer.MAX_VALUE : MappedLogParser.epochDay(to);
+        if ((!from.isEmpty() && f == MappedLogParser.NO_DATE) || (!to.isEmpty() && t == MappedLogParser.NO_DATE)) {
+            JOptionPane.showMessageDialog(frame, "Dates must be yyyy-mm-dd (leave blank for no limit).", "History", JOptionPane.WARNING_MESSAGE);
+            return null;
+        }
+        if (f > t) {
+            JOptionPane.showMessageDialog(frame, "The From date is after the To date.", "History", JOptionPane.WARNING_MESSAGE);
+            return null;
+        }
+        return new int[] { f, t };
+    }
+
+    private static boolean allTime(int fromDay, int toDay) { return fromDay == Integer.MIN_VALUE && toDay == Integer.MAX_VALUE; }
+
+    //                                                        Background History lookup: catches the shared model up, publishes running totals
+    private final class HistoryQuery extends SwingWorker<UserTotals, UserTotals> {
+        private final String filter;
+        private final int fromDay, toDay;   // inclusive epoch days (see allTime())
+        private long lastPublish = System.currentTimeMillis();
+
+        HistoryQuery(String filter, int fromDay, int toDay) { this.filter = filter; this.fromDay = fromDay; this.toDay = toDay; }
+
+        @Override protected UserTotals doInBackground() throws IOException {
+            return lookupHistory(filter, fromDay, toDay, partial -> {
+                if (isCancelled()) throw new CancellationException();
+                long now = System.currentTimeMillis();
+                if (now - lastPublish >= PUBLISH_MS) { lastPublish = now; publish(partial.get(filter).copy()); }
+            });
+        }
+
+        @Override protected void process(List<UserTotals> chunks) {
+            if (historyQuery == this && !isDone()) showHistory(filter, fromDay, toDay, chunks.get(chunks.size() - 1), true);
+        }
+
+        @Override protected void done() {
+            if (historyQuery != this) return; // superseded by a newer lookup
+            historyQuery = null;
+            try {
+                showHistory(filter, fromDay, toDay, get(), false);
+            } catch (InterruptedException | CancellationException ignore) {
+                // cancelled: the newer lookup renders instead
+            } catch (ExecutionException ex) {
+                historyArea.setText("");
+                JOptionPane.showMessageDialog(frame, "Error reading history: " + ex.getCause().getMessage(),
+                        "History Error", JOptionPane.ERROR_MESSAGE);
+            }
+        }
+    }
+
+    // What the History tab shows for 'filter' (saved entries only), caching all-time results. Reads the log, so call it off the EDT.
+    UserTotals lookupHistory(String filter, int fromDay, int toDay, Consumer<HistoryIndex> onChunk) throws IOException {
+        synchronized (indexLock) {
+            if (!allTime(fromDay, toDay)) {
+                // Only the sessions whose days overlap the range are read.
+                return collectHistory(filter, fromDay, toDay, HistoryStream.totals());
+            }
+            // Usually nothing new was appended and this returns straight from memory.
+            HistoryIndex idx = catchUpIndex(filter, onChunk);
+            UserTotals result = idx.get(filter).copy();
+            if (result.daily == null) result.daily = idx.readDaily(DataFiles.log(filter), filter); // for the weekly chart
+            historyResults.put(filter, idx.tail.seenLength, idx.tail.seenMtime, result);
+            return result;
+        }
+    }
+
+    //                                                              Render a compiled history (partial = more of the log is still being read)
+    private void showHistory(String filter, UserTotals saved, boolean partial) {
+        showHistory(filter, Integer.MIN_VALUE, Integer.MAX_VALUE, saved, partial);
+    }
+
+    // Same, for entries dated fromDay..toDay only (level and progress are all-time figures, so they are left out).
+    void showHistory(String filter, int fromDay, int toDay, UserTotals saved, boolean partial) {
+        UserTotals v = saved;
+        boolean ranged = !allTime(fromDay, toDay);
+        // Ensure the History view shows the same level as the All-Time panel for the current user.
+        boolean withSession = false;
+        if (filter.equalsIgnoreCase(userName)) {
+            for (ActivityEntry e : log) {
+                int day = MappedLogParser.epochDay(e.date);
+                if (ranged && (day < fromDay || day > toDay)) continue;
+                if (!withSession) { v = saved.copy(); withSession = true; }
+                v.add(e);
+            }
+        }
+        int total = v.totalXP, count = v.entries;
+        String span = !ranged ? "" : " (" + (fromDay == Integer.MIN_VALUE ? "start" : MappedLogParser.dateString(fromDay))
+                + " to " + (toDay == Integer.MAX_VALUE ? "end" : MappedLogParser.dateString(toDay)) + ")";
+
+        if (count == 0) {
+            historyArea.setText(partial ? "Loading history for " + filter + "..." : "No entries found for user: " + filter + span);
+            return;
+        }
+
+        int level = (total / 1000) + 1;
+        int xpIntoLevel = total % 1000;
+        double pct = (total == 0) ? 0.0 : (xpIntoLevel / 1000.0);
+        DecimalFormat df = new DecimalFormat("0%");
+
+        StringBuilder sb = new StringBuilder();
+        sb.append("--- History for ").append(filter).append(span).append(" ---\n");
+        if (partial) {
+            sb.append("(still reading the log; totals so far)\n");
+        }
+        if (withSession) {
+            sb.append("(includes unsaved entries from this session)\n");
+        }
+        sb.append("Entries recorded: ").append(count).append("\n");
+        sb.append("Total XP: ").append(total).append("\n");
+        if (!ranged) {
+            sb.append("Level: ").append(level)
+              .append("  (").append(xpIntoLevel).append("/1000 to next level, ").append(df.format(pct)).append(")\n");
+        }
+        sb.append("\n");
+
+        sb.append("XP by category:\n");
+        Categories.appendLines(sb, v.xpByCategory);
+
+        if (!ranged && v.daily != null) {
+            int today = (int) LocalDate.now().toEpochDay();
+            int[] streak = v.daily.streaks(today);
+            sb.append("\nStreak: ").append(streak[0]).append(" day(s), longest ").append(streak[1]).append("\n");
+            appendWeeklyChart(sb, v.daily, LocalDate.now(), 12);
+        }
+
+        sb.append("\nMost recent entries:\n");
+        List<ActivityEntry> recent = v.recentEntries(filter);
+        for (int i = recent.size() - 1; i >= 0; i--) {
+            ActivityEntry e = recent.get(i);
+            sb.append("  ").append(e.date).append("  ")
+              .append(e.category).append("  ").append(e.minutes).append("m  ")
+              .append(e.xp).append(" XP\n");
+        }
+        historyArea.setText(sb.toString());
+    }
+
+    //                                                             Graceful exit: optionally add timer minutes; optionally save; then close
+    private void attemptExit() {
+        // If a timer is running, offer to add the rounded minutes to the selected category before exiting.
+        if (timerRunning) {
+            timerRunning = false;
+            timerTick.stop();
+            timerStartPauseBtn.setText("Start");
+            int add = JOptionPane.showConfirmDialog(
+                    frame,
+                    "A timer is running.\nAdd the rounded minutes (" +
+                    (int)Math.round(timerElapsedSec/60.0) + " min) to \"" +
+                    timerCategoryBox.getSelectedItem() + "\" before exiting?",
+                    "Timer Running",
+                    JOptionPane.YES_NO_CANCEL_OPTION,
+                    JOptionPane.WARNING_MESSAGE
+            );
+            if (add == JOptionPane.CANCEL_OPTION || add == JOptionPane.CLOSED_OPTION) {
+                // User changed their mind, stay in the app.
+                return;
+            }
+            if (add == JOptionPane.YES_OPTION) {
+                int minutes = (int)Math.round(timerElapsedSec/60.0);
+                if (minutes >= 1) {
+                    addMinutesFromTimer((String)timerCategoryBox.getSelectedItem(), minutes);
+                }
+            }
+            // Reset timer UI
+            timerElapsedSec = 0;
+            timerTimeLabel.setText("00:00:00");
+            timerCategoryBox.setEnabled(true);
+        }
+
+        // If nothing new to save, just confirm exit.
+        if (log.size() == submitted) {
+            int r = JOptionPane.showConfirmDialog(
+                    frame,
+                    "No new entries to save. Exit now?",
+                    "Exit",
+                    JOptionPane.YES_NO_OPTION,
+                    JOptionPane.QUESTION_MESSAGE
+            );
+            if (r == JOptionPane.YES_OPTION) {
+                finishSaves();
+                if (journal != null) journal.close();
+                frame.dispose();
+                System.exit(0);
+            }
+            return;
+        }
+
+        // Otherwise, offer to save before exit (Yes/No/Cancel).
+        int res = JOptionPane.showConfirmDialog(
+                frame,
+                "Save your current session before exit?",
+                "Save before exit",
+                JOptionPane.YES_NO_CANCEL_OPTION,
+                JOptionPane.QUESTION_MESSAGE
+        );
+        if (res == JOptionPane.CANCEL_OPTION || res == JOptionPane.CLOSED_OPTION) return;
+        if (res == JOptionPane.YES_OPTION) {
+            saveLog(); // If saving fails, an error dialog is shown; we still proceed to close (the journal keeps the entries).
+        }
+        finishSaves(); // only waits for saves already queued
+        if (res == JOptionPane.NO_OPTION && journal != null) {
+            journal.reset(Collections.emptyList()); // chose not to save: nothing to recover next time
+        }
+        if (journal != null) journal.close(); // let queued journal writes finish
+        frame.dispose();
+        System.exit(0);
+    }
+
+    //                                                                    Recalculate and render All-Time stats (history + this session)
+    void updateStatsArea() {
+        // All-Time totals are the sum of saved baseline + entries not saved yet.
+        int allTotal = histTotalXP;
+        long[] allByCat = Arrays.copyOf(histXpByCategory, Math.max(histXpByCategory.length, Categories.count()));
+        for (ActivityEntry e : log) {
+            allTotal += e.xp;
+            allByCat = Categories.add(allByCat, Categories.id(e.category), e.xp);
+        }
+        int level = (allTotal / 1000) + 1;
+        int xpIntoLevel = allTotal % 1000;
+        double pct = (allTotal == 0) ? 0.0 : (xpIntoLevel / 1000.0);
+        DecimalFormat df = new DecimalFormat("0%");
+
+        levelLabel.setText("Level: " + level + "  (" + xpIntoLevel + "/1000 to next)");
+        totalXPLabel.setText("Total XP: " + allTotal);
+        progressBar.setValue((int) Math.round(pct * 100));
+        progressBar.setString(df.format(pct));
+
+        // Build a readable breakdown in the text area.
+        StringBuilder sb = new StringBuilder();
+        if (baselineLoading) sb.append("(loading saved history...)\n");
+        if (damagedBytes > 0) sb.append("(skipped ").append(damagedBytes).append(" bytes of damaged log data)\n");
+        sb.append("Entries (all-time): ").append(histEntries + log.size()).append("\n");
+        sb.append("XP by category (all-time):\n");
+        if (!Categories.appendLines(sb, allByCat)) {
+            sb.append("  (no entries yet)\n");
+        }
+        LocalDate today = LocalDate.now();
+        sb.append("\nTotals (incl. this session):\n");
+        appendPeriod(sb, "This week", daily, today.minusDays(today.getDayOfWeek().getValue() - 1), today);
+        appendPeriod(sb, "This month", daily, today.withDayOfMonth(1), today);
+        appendPeriod(sb, "This year", daily, today.withDayOfYear(1), today);
+        int[] streak = daily.streaks((int) today.toEpochDay());
+        sb.append("  Streak: ").append(streak[0]).append(" day(s), longest ").append(streak[1]).append("\n");
+
+        sb.append("\nThis session only:\n");
+        sb.append("  Entries: ").append(sessionEntries).append("\n");
+        if (!Categories.appendLines(sb, xpByCategory)) {
+            sb.append("  XP by category: (none yet)\n");
+        }
+        statsArea.setText(sb.toString());
+    }
+
+    private static void appendPeriod(StringBuilder sb, String label, DailySeries d, LocalDate from, LocalDate to) {
+        long[] sums = d.sum((int) from.toEpochDay(), (int) to.toEpochDay());
+        sb.append(String.format("  %-10s : %d XP, %d min%n", label, DailySeries.xp(sums), DailySeries.minutes(sums)));
+    }
+
+    // Text bar chart of XP per week (Monday to Sunday) for the last 'weeks' weeks, oldest first.
+    private static void appendWeeklyChart(StringBuilder sb, DailySeries d, LocalDate today, int weeks) {
+        LocalDate monday = today.minusDays(today.getDayOfWeek().getValue() - 1).minusWeeks(weeks - 1);
+        long[] xp = new long[weeks];
+        long max = 0;
+        for (int w = 0; w < weeks; w++) {
+            int from = (int) monday.plusWeeks(w).toEpochDay();
+            xp[w] = DailySeries.xp(d.sum(from, from + 6));
+            max = Math.max(max, xp[w]);
+        }
+        sb.append("\nXP per week (last ").append(weeks).append("):\n");
+        for (int w = 0; w < weeks; w++) {
+            int bar = (max <= 0 || xp[w] <= 0) ? 0 : (int) Math.max(1, Math.round(40.0 * xp[w] / max));
+            sb.append("  ").append(monday.plusWeeks(w)).append("  ");
+            for (int i = 0; i < bar; i++) sb.append('#');
+            sb.append(' ').append(xp[w]).append('\n');
+        }
+    }
+
+    //                                                                             Load saved totals for this user so All-Time = history + session
+    // fromDisk=false only catches the index up (a second pass for saves that finished during the first).
+    private void loadUserHistoryBaseline(boolean fromDisk) {
+        // Runs off the EDT: start from the sidecar index and only parse what was appended to the log since it was written.
+        // This single scan builds the shared history model; the History tab (prefilled with our name) is rendered from it too.
+        // Saving does not wait for it: a save that finishes meanwhile is shown on top of the partial totals, and once the
+        // pass is over a quick catch-up reads it back from the log, so it is counted exactly once.
+        baselineLoading = true;
+        int savedBefore = savedWhileLoading.size();
+        SwingWorker<UserTotals, UserTotals> loader = new SwingWorker<UserTotals, UserTotals>() {
+            private long lastPublish = System.currentTimeMillis();
+
+            @Override protected UserTotals doInBackground() throws IOException {
+                synchronized (indexLock) {
+                    if (fromDisk) {
+                        if (DataFiles.SHARDED) ShardStore.migrate(DataFiles.file(DataFiles.LOG_NAME), DataFiles.SHARD_EXT); // first run in shard mode: split the shared log
+                        historyIndex = HistoryIndex.load(DataFiles.index(userName));
+                    }
+                    HistoryIndex idx = catchUpIndex(userName, !fromDisk ? null : partial -> {
+                        long now = System.currentTimeMillis();
+                        if (now - lastPublish >= PUBLISH_MS) { lastPublish = now; publish(partial.get(userName).copy()); }
+                    });
+                    return idx.get(userName).copy();
+                }
+            }
+
+            @Override protected void process(List<UserTotals> chunks) {
+                if (!isDone()) applyBaseline(chunks.get(chunks.size() - 1), true);
+            }
+
+            @Override protected void done() {
+                try {
+                    UserTotals t = get();
+                    if (savedWhileLoading.size() > savedBefore) { loadUserHistoryBaseline(false); return; } // may have missed them
+                    applyBaseline(t, false);
+                } catch (InterruptedException | CancellationException ignore) {
+                    applyBaseline(new UserTotals(), false);
+                } catch (ExecutionException ex) {
+                    applyBaseline(new UserTotals(), false);
+                    JOptionPane.showMessageDialog(frame, "Error reading history: " + ex.getCause().getMessage(),
+                            "History Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        };
+        loader.execute();
+    }
+
+    // Replace the saved-history baseline (called with running totals while loading, then once with the final ones).
+    void applyBaseline(UserTotals t, boolean stillLoading) {
+        histTotalXP = t.totalXP;
+        histEntries = t.entries;
+        histXpByCategory = t.xpByCategory.clone();
+        if (stillLoading) {
+            for (ActivityEntry e : savedWhileLoading) { // appended after the bytes this pass reads
+                histEntries++;
+                histTotalXP += e.xp;
+                histXpByCategory = Categories.add(histXpByCategory, Categories.id(e.category), e.xp);
+            }
+        } else {
+            savedWhileLoading.clear();
+            daily = (t.daily != null) ? t.daily.copy() : new DailySeries();
+            for (ActivityEntry e : log) daily.add(e); // not saved yet (or still being written)
+        }
+        baselineLoading = stillLoading;
+        updateStatsArea();
+        // Mirror into the History tab while it still shows our own name and no other lookup is running.
+        if (historyQuery == null && historyUserField.getText().trim().equalsIgnoreCase(userName) && historyRangeBox.getSelectedIndex() == 0) {
+            showHistory(historyUserField.getText().trim(), t, stillLoading);
+        }
+    }
+
+    //                                                                       Bring the sidecar index up to date with xp_log.txt and persist it
+    private void updateHistoryIndex() {
+        new SwingWorker<Void, Void>() {
+            @Override protected Void doInBackground() throws IOException {
+                synchronized (indexLock) { catchUpIndex(userName, null); }
+                return null;
+            }
+            @Override protected void done() {
+                try {
+                    get();
+                } catch (InterruptedException | CancellationException ignore) {
+                    // never cancelled
+                } catch (ExecutionException ex) {
+                    JOptionPane.showMessageDialog(frame, "Error reading history: " + ex.getCause().getMessage(),
+                            "History Error", JOptionPane.ERROR_MESSAGE);
+                }
+            }
+        }.execute();
+    }
+
+    // Caught-up index covering 'user' (caller holds indexLock). Ours is kept in historyIndex; in shard mode
+    // other users' shards are indexed on demand and not kept.
+    private HistoryIndex catchUpIndex(String user, Consumer<HistoryIndex> onChunk) throws IOException {
+        boolean own = !DataFiles.SHARDED || user.equalsIgnoreCase(userName);
+        HistoryIndex idx = own ? historyIndex : HistoryIndex.load(DataFiles.index(user));
+        idx.onChunk = onChunk;
+        try {
+            idx = HistoryIndex.refresh(idx, DataFiles.log(user), DataFiles.index(user));
+        } finally {
+            idx.onChunk = null;
+        }
+        if (own) {
+            historyIndex = idx;
+            damagedBytes = idx.tail.skipped;
+        }
+        if (user.equalsIgnoreCase(userName) && idx.track(DataFiles.log(user), user)) {
+            try {
+                idx.save(DataFiles.index(user)); // keep the new daily series
+            } catch (IOException ignore) {
+                // only a cache: rebuilt from the log next time
+            }
+        }
+        return idx;
+    }
+
+    //                                                   Collect one user's saved entries (fromDay..toDay) as a stream over their sessions
+    // Nothing is materialized beyond what the collector keeps. Reads the log, so call it off the EDT.
+    <R> R collectHistory(String user, int fromDay, int toDay, Collector<HistoryRecord, ?, R> collector) throws IOException {
+        synchronized (indexLock) {
+            HistoryIndex idx = catchUpIndex(user, null);
+            try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, DataFiles.log(user), user, fromDay, toDay)) {
+                return records.collect(collector);
+            } catch (UncheckedIOException ex) {
+                throw ex.getCause();
+            }
+        }
+    }
+
+    //                                                                                   Small helper to make a consistent "primary" button look 
+    private JButton primaryButton(String text, ActionListener action) {
+        JButton b = new JButton(text);
+        b.addActionListener(action);
+        b.setBackground(new Color(35, 134, 54));
+        b.setForeground(Color.WHITE);
+        b.setOpaque(true);
+        b.setBorder(new CompoundBorder(new LineBorder(new Color(28, 106, 43)), new EmptyBorder(6,10,6,10)));
+        b.setFocusPainted(false);
+        return b;
+    }
+
+    //                                                                          Cross-version shortcut mask via reflection (avoids any compile-time deprecation warnings)
+    private int menuShortcutMask() {
+        try {
+            return (int) Toolkit.class
+                .getMethod("getMenuShortcutKeyMaskEx")
+                .invoke(Toolkit.getDefaultToolkit()); // Java 9+
+        } catch (Exception ignore) {
+            try {
+                return (int) Toolkit.class
+                    .getMethod("getMenuShortcutKeyMask")
+                    .invoke(Toolkit.getDefaultToolkit()); // Java 8 
+            } catch (Exception e) {
+                return InputEvent.META_DOWN_MASK; // macOS fallback (my device)
+            }
+        }
+    }
+
+    //                                                                             Global hotkeys: Ctrl/Cmd+A (Add), Ctrl/Cmd+S (Save), Ctrl/Cmd+H (History)
+    private void installShortcuts() {
+        int mask = menuShortcutMask();
+        JRootPane root = frame.getRootPane();
+        InputMap im = root.getInputMap(JComponent.WHEN_IN_FOCUSED_WINDOW);
+        ActionMap am = root.getActionMap();
+
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_A, mask), "add");
+        am.put("add", new AbstractAction() { public void actionPerformed(ActionEvent e) { handleAddActivity(); } });
+
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_S, mask), "save");
+        am.put("save", new AbstractAction() { public void actionPerformed(ActionEvent e) { saveLog(); } });
+
+        im.put(KeyStroke.getKeyStroke(KeyEvent.VK_H, mask), "history");
+        am.put("history", new AbstractAction() { public void actionPerformed(ActionEvent e) { viewHistoryByUser(); } });
+    }
+}
@@ -0,0 +1,397 @@
+// XpbLog
+package xptracker;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.Inflater;
+
+//                                                                 Binary columnar log (.xpb): an alternative to the CSV text log
+// File = "XPB" + version byte, then self-contained blocks (one per save). Each block carries its own small user
+// and category dictionaries and stores every field as a column. Block layout (big-endian):
+//   int 'XBLK', int bodyLength | long savedAt, int n, short users + names, short categories + names,
+//   byte[n] category, int[n] xp, short[n] user (only if >1 user), int[n] epochDay, ushort[n] minutes
+//   [, long generation, long count: the saving window's journal stamp (see SessionJournal.Mark), older readers ignore it]
+// A compressed block is 'XBLZ', int bodyLength | int rawLength, Deflater output of the body above. Every block
+// (plain or compressed) decodes on its own, so a reader seeking to one via the index inflates only that block.
+// 'XBKC'/'XBZC' are the same two with a CRC-32 of the rest of the body as its last 4 bytes (counted in bodyLength).
+// A reader skips a block that fails its check, and on a damaged header resyncs at the next complete block.
+class XpbLog {
+    static final byte[] MAGIC = { 'X', 'P', 'B', 1 };   // last byte is the format version
+    private static final int BLOCK_MAGIC = 0x58424C4B;  // "XBLK"
+    private static final int BLOCK_DEFLATED = 0x58424C5A; // "XBLZ"
+    private static final int BLOCK_CHECKED = 0x58424B43;  // "XBKC"
+    private static final int DEFLATED_CHECKED = 0x58425A43; // "XBZC"
+    static final int MAX_BLOCK_ENTRIES = 8192;           // longer appends are split, so each block stays cheap to inflate
+
+    // True if the channel starts with the .xpb magic (any other content is treated as the text format).
+    static boolean isXpb(FileChannel ch) throws IOException {
+        if (ch.size() < MAGIC.length) return false;
+        ByteBuffer head = ByteBuffer.allocate(MAGIC.length);
+        while (head.hasRemaining() && ch.read(head, head.position()) >= 0) { }
+        return head.get(0) == MAGIC[0] && head.get(1) == MAGIC[1] && head.get(2) == MAGIC[2];
+    }
+
+    // Append the entries as one block, or several of MAX_BLOCK_ENTRIES (the file and its magic are created on first use).
+    static void append(File file, List<ActivityEntry> entries) throws IOException { append(file, entries, false, false); }
+
+    static void append(File file, List<ActivityEntry> entries, boolean fsync, boolean compress) throws IOException {
+        append(file, entries, fsync, compress, null);
+    }
+
+    // Same, stamping the last block with 'mark' (if not null).
+    static void append(File file, List<ActivityEntry> entries, boolean fsync, boolean compress, SessionJournal.Mark mark) throws IOException {
+        ByteArrayOutputStream blocks = new ByteArrayOutputStream();
+        for (int from = 0; from < entries.size(); from += MAX_BLOCK_ENTRIES) {
+            int to = Math.min(entries.size(), from + MAX_BLOCK_ENTRIES);
+            blocks.write(encode(entries.subList(from, to), compress, (to == entries.size()) ? mark : null));
+        }
+        ByteBuffer block = ByteBuffer.wrap(blocks.toByteArray());
+        // Exclusive OS lock: another instance appending at the same time waits for this block to be complete.
+        try (FileChannel lock = LogWriter.lockAppends(file);
+             FileChannel ch = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            long end = ch.size();
+            if (end == 0) end += ch.write(ByteBuffer.wrap(MAGIC), 0);
+            // Blocks before the end the last append recorded were walked then; a log shorter than that was rewritten.
+            long known = verifiedEnd(lock);
+            long valid = validEnd(ch, (known >= MAGIC.length && known <= end) ? known : MAGIC.length, end);
+            if (valid < end) ch.truncate(valid); // a writer died part way through its block: drop the torn tail
+            while (block.hasRemaining()) valid += ch.write(block, valid);
+            if (fsync) ch.force(false);
+            rememberEnd(lock, valid);
+        }
+    }
+
+    // The append lock's sidecar holds the log's end after the last append (by any process), so the next append
+    // only walks the blocks written since. 0 = not known.
+    private static long verifiedEnd(FileChannel lock) throws IOException {
+        ByteBuffer b = read(lock, 0, 8);
+        return (b.limit() == 8) ? b.getLong(0) : 0;
+    }
+
+    private static void rememberEnd(FileChannel lock, long end) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(8).putLong(0, end);
+        while (b.hasRemaining()) lock.write(b, b.position());
+    }
+
+    // For whoever replaces the log under the append lock: the next append walks it from the start.
+    static void forgetEnd(FileChannel lock) throws IOException { lock.truncate(0); }
+
+    // One complete block (header included).
+    private static byte[] encode(List<ActivityEntry> entries, boolean compress, SessionJournal.Mark mark) throws IOException {
+        List<String> users = new ArrayList<>(), cats = new ArrayList<>();
+        for (ActivityEntry e : entries) {
+            if (!users.contains(e.user)) users.add(e.user);
+            if (!cats.contains(e.category)) cats.add(e.category);
+        }
+        if (cats.size() > 256) throw new IOException("too many categories in one block");
+        int n = entries.size();
+
+        ByteArrayOutputStream body = new ByteArrayOutputStream(32 + 16 * n);
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeLong(System.currentTimeMillis());
+        out.writeInt(n);
+        out.writeShort(users.size());
+        for (String u : users) writeName(out, u);
+        out.writeShort(cats.size());
+        for (String c : cats) writeName(out, c);
+        for (ActivityEntry e : entries) out.writeByte(cats.indexOf(e.category));
+        for (ActivityEntry e : entries) out.writeInt(e.xp);
+        if (users.size() > 1) for (ActivityEntry e : entries) out.writeShort(users.indexOf(e.user));
+        for (ActivityEntry e : entries) out.writeInt(MappedLogParser.epochDay(e.date));
+        for (ActivityEntry e : entries) out.writeShort(e.minutes);
+        if (mark != null) {
+            out.writeLong(mark.generation);
+            out.writeLong(mark.count);
+        }
+        out.flush();
+
+        byte[] raw = body.toByteArray();
+        ByteArrayOutputStream block = new ByteArrayOutputStream(8 + raw.length);
+        DataOutputStream b = new DataOutputStream(block);
+        boolean sum = MappedLogParser.CHECKSUMS;
+        if (compress) {
+            Deflater deflater = new Deflater(Deflater.BEST_COMPRESSION);
+            ByteArrayOutputStream packed = new ByteArrayOutputStream(raw.length / 4 + 64);
+            try (DeflaterOutputStream z = new DeflaterOutputStream(packed, deflater)) {
+                z.write(raw);
+            } finally {
+                deflater.end();
+            }
+            b.writeInt(sum ? DEFLATED_CHECKED : BLOCK_DEFLATED);
+            b.writeInt(4 + packed.size() + (sum ? 4 : 0));
+            b.writeInt(raw.length);
+            packed.writeTo(b);
+        } else {
+            b.writeInt(sum ? BLOCK_CHECKED : BLOCK_MAGIC);
+            b.writeInt(raw.length + (sum ? 4 : 0));
+            b.write(raw);
+        }
+        b.flush();
+        byte[] bytes = block.toByteArray();
+        if (!sum) return bytes;
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 8, bytes.length - 8);
+        bytes = Arrays.copyOf(bytes, bytes.length + 4);
+        ByteBuffer.wrap(bytes).putInt(bytes.length - 4, (int) crc.getValue());
+        return bytes;
+    }
+
+    private static boolean isBlock(int magic) {
+        return magic == BLOCK_MAGIC || magic == BLOCK_DEFLATED || magic == BLOCK_CHECKED || magic == DEFLATED_CHECKED;
+    }
+
+    private static boolean isChecked(int magic) { return magic == BLOCK_CHECKED || magic == DEFLATED_CHECKED; }
+
+    // True if a checked block's body (CRC included) matches its CRC; unchecked blocks always pass.
+    private static boolean checksumOk(int magic, ByteBuffer body) {
+        if (!isChecked(magic)) return true;
+        int len = body.limit() - 4;
+        if (len < 0) return false;
+        CRC32 crc = new CRC32();
+        ByteBuffer data = body.duplicate();
+        data.position(0).limit(len);
+        crc.update(data);
+        return (int) crc.getValue() == body.getInt(len);
+    }
+
+    // Same, reading the body at 'pos' in small pieces (the header may be a stray magic with a bogus length).
+    private static boolean checksumOk(FileChannel ch, long pos, int magic, int bodyLen) throws IOException {
+        if (!isChecked(magic)) return true;
+        if (bodyLen < 4) return false;
+        CRC32 crc = new CRC32();
+        ByteBuffer piece = ByteBuffer.allocate(64 << 10);
+        for (long at = pos + 8, end = at + bodyLen - 4; at < end; ) {
+            piece.clear().limit((int) Math.min(piece.capacity(), end - at));
+            if (ch.read(piece, at) < 0) return false;
+            piece.flip();
+            at += piece.remaining();
+            crc.update(piece);
+        }
+        ByteBuffer want = read(ch, pos + 4 + bodyLen, 4);
+        return want.limit() == 4 && (int) crc.getValue() == want.getInt(0);
+    }
+
+    // Up to 'len' bytes at 'pos', read into the heap (fewer at end of file). Blocks are read, not mapped: a user's
+    // posting list may name more blocks than the OS allows live mappings.
+    private static ByteBuffer read(FileChannel ch, long pos, int len) throws IOException {
+        ByteBuffer b = ByteBuffer.allocate(len);
+        while (b.hasRemaining() && ch.read(b, pos + b.position()) >= 0) { }
+        return b.flip();
+    }
+
+    // The decoded body of the block whose header is at 'pos' (inflated into memory if it is compressed).
+    private static ByteBuffer body(FileChannel ch, long pos, int magic, int bodyLen) throws IOException {
+        ByteBuffer stored = read(ch, pos + 8, bodyLen);
+        if (stored.limit() != bodyLen || !checksumOk(magic, stored)) throw new IOException("corrupt .xpb block at byte " + pos);
+        if (isChecked(magic)) stored.limit(bodyLen - 4);
+        if (magic == BLOCK_MAGIC || magic == BLOCK_CHECKED) return stored;
+        bodyLen = stored.limit();
+        int rawLen = (bodyLen >= 4) ? stored.getInt(0) : -1;
+        if (rawLen < 0) throw new IOException("corrupt .xpb block at byte " + pos);
+        Inflater inflater = new Inflater();
+        try {
+            stored.position(4);
+            inflater.setInput(stored);
+            ByteBuffer raw = ByteBuffer.allocate(rawLen);
+            while (raw.hasRemaining() && !inflater.finished()) {
+                if (inflater.inflate(raw) == 0 && (inflater.needsInput() || inflater.needsDictionary())) break;
+            }
+            if (raw.hasRemaining()) throw new IOException("corrupt .xpb block at byte " + pos);
+            raw.flip();
+            return raw;
+        } catch (DataFormatException ex) {
+            throw new IOException("corrupt .xpb block at byte " + pos, ex);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    // End of the last complete block, walking the block headers from the block start 'from' (only called under
+    // the append lock). Damaged bytes followed by more complete blocks stay in place (readers skip them); only a
+    // torn tail is cut.
+    private static long validEnd(FileChannel ch, long from, long end) throws IOException {
+        long pos = from;
+        while (pos + 8 <= end) {
+            long next = complete(ch, pos, end, false);
+            if (next < 0) next = nextBlock(ch, pos + 1, end);
+            if (next < 0) break;
+            pos = next;
+        }
+        return pos;
+    }
+
+    // End of the block at 'pos' if its header is sane and it fits before 'end' (and, with verify, passes its
+    // check); otherwise -1.
+    static long complete(FileChannel ch, long pos, long end, boolean verify) throws IOException {
+        if (pos + 8 > end) return -1;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (head.hasRemaining() && ch.read(head, pos + head.position()) >= 0) { }
+        int magic = head.getInt(0), bodyLen = head.getInt(4);
+        if (!isBlock(magic) || bodyLen < 0 || pos + 8 + bodyLen > end) return -1;
+        if (verify && !checksumOk(ch, pos, magic, bodyLen)) return -1;
+        return pos + 8 + bodyLen;
+    }
+
+    // First block start at or after 'at', walking block headers from the block start 'from'; 'end' if there is none.
+    static long blockAtOrAfter(FileChannel ch, long from, long at, long end) throws IOException {
+        long pos = from;
+        while (pos < at) {
+            long next = complete(ch, pos, end, false);
+            if (next < 0) return end;
+            pos = next;
+        }
+        return pos;
+    }
+
+    // Start of the first complete block at or after 'from' (checked blocks must pass their CRC), or -1 if none:
+    // where a reader resumes after a damaged block header.
+    private static long nextBlock(FileChannel ch, long from, long end) throws IOException {
+        for (long at = from; at + 8 <= end; ) {
+            int len = (int) Math.min(1 << 24, end - at);
+            MappedByteBuffer m = ch.map(FileChannel.MapMode.READ_ONLY, at, len);
+            for (int i = 0; i + 4 <= len; i++) {
+                if (isBlock(m.getInt(i)) && complete(ch, at + i, end, true) >= 0) return at + i;
+            }
+            at += len - 3; // a magic may straddle two windows
+        }
+        return -1;
+    }
+
+    // Dictionary names: unsigned short byte length + UTF-8 bytes.
+    private static void writeName(DataOutputStream out, String name) throws IOException {
+        byte[] b = name.getBytes(StandardCharsets.UTF_8);
+        if (b.length > 0xFFFF) throw new IOException("name too long for .xpb: " + name.length() + " chars");
+        out.writeShort(b.length);
+        out.write(b);
+    }
+
+    private static String readName(ByteBuffer b) {
+        byte[] raw = new byte[b.getShort() & 0xFFFF];
+        b.get(raw);
+        return new String(raw, StandardCharsets.UTF_8);
+    }
+
+    // Deliver every complete block between state.offset and 'end'.
+    static void scan(FileChannel ch, long end, LogTail state, MappedLogParser.RecordSink sink) throws IOException {
+        long pos = Math.max(state.offset, MAGIC.length);
+        state.currentUser = null; // blocks name their own users
+        state.sealed = false;
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (pos + 8 <= end) {
+            head.clear();
+            while (head.hasRemaining() && ch.read(head, pos + head.position()) >= 0) { }
+            int magic = head.getInt(0);
+            int bodyLen = head.getInt(4);
+            if (!isBlock(magic) || bodyLen < 0 || pos + 8 + bodyLen > end) {
+                // Block still being written, or a damaged header: resume at the next complete block if there is one.
+                long next = nextBlock(ch, pos + 1, end);
+                if (next < 0) break;
+                state.skipped += next - pos;
+                pos = next;
+                state.offset = pos;
+                continue;
+            }
+            try {
+                readBlock(body(ch, pos, magic, bodyLen), pos, null, sink);
+            } catch (IOException ex) {
+                state.skipped += 8 + bodyLen; // failed its check, would not inflate or does not add up: skip it whole
+            }
+            pos += 8 + bodyLen;
+            state.offset = pos;
+            sink.chunkDone(pos);
+        }
+        if (state.offset < MAGIC.length && end >= MAGIC.length) state.offset = MAGIC.length;
+    }
+
+    // The journal stamp after the columns of the block at 'at', or null if it has none.
+    static SessionJournal.Mark journalMark(FileChannel ch, long at) throws IOException {
+        ByteBuffer head = read(ch, at, 8);
+        if (head.limit() < 8 || !isBlock(head.getInt(0)) || head.getInt(4) < 0) return null;
+        ByteBuffer b = body(ch, at, head.getInt(0), head.getInt(4));
+        try {
+            b.getLong(); // savedAt
+            long n = b.getInt();
+            int users = b.getShort() & 0xFFFF;
+            for (int i = 0; i < users; i++) readName(b);
+            int cats = b.getShort() & 0xFFFF;
+            for (int i = 0; i < cats; i++) readName(b);
+            long end = b.position() + n * (users > 1 ? 13 : 11);
+            return (n >= 0 && b.limit() - end >= 16) ? new SessionJournal.Mark(b.getLong((int) end), b.getLong((int) end + 8)) : null;
+        } catch (BufferUnderflowException ex) {
+            return null;
+        }
+    }
+
+    // Deliver the block that starts at 'at' (a posting-list offset), only the records of users with this key.
+    static void scanBlock(FileChannel ch, long at, String userKey, MappedLogParser.RecordSink sink) throws IOException {
+        ByteBuffer head = ByteBuffer.allocate(8);
+        while (head.hasRemaining() && ch.read(head, at + head.position()) >= 0) { }
+        int bodyLen = head.getInt(4);
+        if (!isBlock(head.getInt(0)) || bodyLen < 0 || at + 8 + bodyLen > ch.size()) throw new IOException("corrupt .xpb block at byte " + at);
+        readBlock(body(ch, at, head.getInt(0), bodyLen), at, userKey, sink);
+    }
+
+    private static void readBlock(ByteBuffer b, long at, String userKey, MappedLogParser.RecordSink sink) throws IOException {
+        // Unchecked blocks (XBLK/XBLZ) may be damaged anywhere, so the dictionaries, the column lengths and every
+        // dictionary index are checked before the first record is delivered: a bad block is skipped as a whole.
+        int n;
+        String[] users, cats;
+        try {
+            b.getLong(); // savedAt
+            n = b.getInt();
+            users = new String[b.getShort() & 0xFFFF];
+            for (int i = 0; i < users.length; i++) users[i] = readName(b);
+            cats = new String[b.getShort() & 0xFFFF];
+            for (int i = 0; i < cats.length; i++) cats[i] = readName(b);
+        } catch (BufferUnderflowException ex) {
+            throw new IOException("truncated .xpb block at byte " + at);
+        }
+        // At least 11 bytes per entry (category, xp, day, minutes), so the column offsets below cannot overflow.
+        if (n < 0 || n > (b.limit() - b.position()) / 11) throw new IOException("corrupt .xpb block at byte " + at);
+        if (n > 0 && (users.length == 0 || cats.length == 0)) throw new IOException("corrupt .xpb block at byte " + at);
+
+        // Column start positions: everything after the dictionaries is fixed-width.
+        int catCol = b.position();
+        int xpCol = catCol + n;
+        int userCol = xpCol + 4 * n;
+        int dayCol = userCol + (users.length > 1 ? 2 * n : 0);
+        int minCol = dayCol + 4 * n;
+        if (minCol + 2 * n > b.limit()) throw new IOException("truncated .xpb block at byte " + at);
+        for (int i = 0; i < n; i++) {
+            if ((b.get(catCol + i) & 0xFF) >= cats.length
+                    || (users.length > 1 && (b.getShort(userCol + 2 * i) & 0xFFFF) >= users.length)) {
+                throw new IOException("corrupt .xpb block at byte " + at);
+            }
+        }
+
+        boolean[] wanted = new boolean[users.length];
+        for (int i = 0; i < users.length; i++) {
+            wanted[i] = userKey == null || userKey.equals(HistoryIndex.userKey(users[i]));
+            if (userKey == null) sink.session(users[i], at);
+        }
+        int[] catIds = new int[cats.length];
+        for (int i = 0; i < catIds.length; i++) catIds[i] = Categories.id(cats[i]);
+        for (int i = 0; i < n; i++) {
+            int u = (users.length > 1) ? b.getShort(userCol + 2 * i) & 0xFFFF : 0;
+            if (!wanted[u]) continue;
+            String user = users[u];
+            int cat = catIds[b.get(catCol + i) & 0xFF];
+            sink.record(user, b.getInt(dayCol + 4 * i), cat, b.getShort(minCol + 2 * i) & 0xFFFF, b.getInt(xpCol + 4 * i));
+        }
+    }
+}
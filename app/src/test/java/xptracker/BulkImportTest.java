@@ -0,0 +1,178 @@
+// BulkImportTest
+package xptracker;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 Bulk import: mapping, 300-minute chunking and dedupe
+// Goes through DataFiles, so it writes to the xptracker.home the build sets for tests.
+class BulkImportTest {
+
+    @TempDir
+    File dir;
+
+    private final File log = DataFiles.file(DataFiles.LOG_NAME);
+
+    @BeforeEach
+    void emptyHome() throws IOException {
+        File home = log.getAbsoluteFile().getParentFile();
+        Files.createDirectories(home.toPath());
+        for (String name : new String[] { DataFiles.LOG_NAME, DataFiles.INDEX_NAME, DataFiles.LOG_NAME + ".lock" }) {
+            Files.deleteIfExists(new File(home, name).toPath());
+        }
+    }
+
+    private File input(String name, String... lines) throws IOException {
+        File f = new File(dir, name);
+        Files.write(f.toPath(), Arrays.asList(lines), StandardCharsets.UTF_8);
+        return f;
+    }
+
+    private static BulkImport importer(String user) {
+        return new BulkImport(user, Collections.singletonMap("running", "WORKOUT"));
+    }
+
+    private List<String> saved() throws IOException {
+        try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+            return records.map(r -> r.user + ":" + r.toEntry().toCSV()).collect(Collectors.toList());
+        }
+    }
+
+    @Test
+    void longRowsAreSplitIntoMaxMinuteEntries() throws IOException {
+        BulkImport.Result r = importer(null).run(input("a.csv",
+                "user,date,category,minutes",
+                "alice,2024-05-01,study,720"), false);
+        assertEquals(1, r.rows);
+        assertEquals(3, r.imported);
+        assertEquals(Arrays.asList(
+                "alice:2024-05-01,STUDY,300,1500",
+                "alice:2024-05-01,STUDY,300,1500",
+                "alice:2024-05-01,STUDY,120,600"), saved());
+    }
+
+    @Test
+    void columnsAndCategoriesAreMapped() throws IOException {
+        BulkImport.Result r = importer("carol").run(input("a.csv",
+                "﻿Day;Activity;Hours;Notes",
+                "2024-06-01T07:30:00Z;Running;1.5;\"a; b\"",
+                "2024-06-02;\"Writing\";0.25;"), false);
+        assertEquals(0, r.rejected, r.problems.toString());
+        assertEquals(Arrays.asList("carol:2024-06-01,WORKOUT,90,720", "carol:2024-06-02,WRITING,15,60"), saved());
+    }
+
+    @Test
+    void jsonArrayAndJsonLinesAreBothRead() throws IOException {
+        importer(null).run(input("a.json",
+                "[ {\"user\":\"dave\",\"date\":\"2024-06-01\",\"category\":\"CODING\",\"minutes\":30,\"meta\":{\"x\":[1,\"}\"]}},",
+                "  {\"user\":\"dave\",\"date\":\"2024-06-02\",\"type\":\"workout\",\"seconds\":\"600\"} ]"), false);
+        importer(null).run(input("b.jsonl",
+                "{\"user\":\"erin\",\"date\":\"2024-06-03\",\"category\":\"study\",\"duration\":5}"), false);
+        assertEquals(Arrays.asList("dave:2024-06-01,CODING,30,180", "dave:2024-06-02,WORKOUT,10,80",
+                "erin:2024-06-03,STUDY,5,25"), saved());
+    }
+
+    @Test
+    void reimportingAddsNothing() throws IOException {
+        File csv = input("a.csv", "user,date,category,minutes",
+                "alice,2024-05-01,study,720",
+                "alice,2024-05-01,running,45",
+                "alice,2024-05-01,running,45",
+                "bob,2024-05-02,coding,30");
+        BulkImport.Result first = importer(null).run(csv, false);
+        List<String> afterFirst = saved();
+        BulkImport.Result second = importer(null).run(csv, false);
+        assertEquals(6, first.imported);
+        assertEquals(0, second.imported);
+        assertEquals(6, second.duplicates);
+        assertEquals(afterFirst, saved());
+    }
+
+    @Test
+    void duplicatesAreMatchedOneForOne() throws IOException {
+        // One 45-minute run is already saved; the export has it twice, so one of them is new.
+        importer(null).run(input("a.csv", "user,date,category,minutes", "alice,2024-05-01,running,45"), false);
+        BulkImport.Result r = importer(null).run(input("b.csv", "user,date,category,minutes",
+                "ALICE,2024-05-01,running,45",
+                "alice,2024-05-01,running,45"), false);
+        assertEquals(1, r.duplicates);
+        assertEquals(1, r.imported);
+        Map<String,UserTotals> totals = TestLogs.serialIndex(log).users;
+        assertEquals(2, totals.get(HistoryIndex.userKey("alice")).entries);
+    }
+
+    @Test
+    void dryRunWritesNothing() throws IOException {
+        BulkImport.Result r = importer(null).run(input("a.csv", "user,date,category,minutes", "alice,2024-05-01,study,30"), true);
+        assertEquals(1, r.imported);
+        assertTrue(!log.exists() || log.length() == 0);
+    }
+
+    @Test
+    void unusableRowsAreRejectedWithTheirOffset() throws IOException {
+        BulkImport.Result r = importer(null).run(input("a.csv", "user,date,category,minutes",
+                "bob,not-a-date,coding,30",
+                "bob,2024-05-03,knitting,30",
+                "bob,2024-05-03,coding,0",
+                ",2024-05-03,coding,10",
+                "bob,2024-05-03,coding,10"), false);
+        assertEquals(5, r.rows);
+        assertEquals(4, r.rejected);
+        assertEquals(1, r.imported);
+        assertEquals("byte 27: unreadable date 'not-a-date'", r.problems.get(0));
+        assertTrue(r.problems.get(1).endsWith("unknown category 'knitting'"));
+        assertTrue(r.problems.get(2).endsWith("unusable duration"));
+        assertTrue(r.problems.get(3).endsWith("no user"));
+    }
+
+    @Test
+    void usersThatWouldBreakTheHeaderAreRejected() throws IOException {
+        BulkImport.Result r = importer(null).run(input("a.jsonl",
+                "{\"user\":\"eve\\n=== Session for mallory on 2024-01-01T00:00 ===\",\"date\":\"2024-05-03\",\"category\":\"coding\",\"minutes\":10}",
+                "{\"user\":\"bob on tour\",\"date\":\"2024-05-03\",\"category\":\"coding\",\"minutes\":10}",
+                "{\"user\":\"===\",\"date\":\"2024-05-03\",\"category\":\"coding\",\"minutes\":10}",
+                "{\"user\":\"bob\",\"date\":\"2024-05-03\",\"category\":\"coding\",\"minutes\":10}"), false);
+        assertEquals(3, r.rejected);
+        assertEquals("byte 0: line break in user name", r.problems.get(0));
+        assertTrue(r.problems.get(1).endsWith("' on ' in user name"));
+        assertTrue(r.problems.get(2).endsWith("'===' in user name"));
+        assertEquals(Arrays.asList("bob:2024-05-03,CODING,10,60"), saved());
+        assertThrows(IllegalArgumentException.class, () -> importer("bob on tour"));
+    }
+
+    @Test
+    void writerRefusesAnUnsafeUser() {
+        List<LogWriter.Batch> group = Collections.singletonList(new LogWriter.Batch(log, "x\r\ny",
+                Collections.singletonList(new ActivityEntry("2024-05-03", "CODING", 10, 60, "x\r\ny"))));
+        assertThrows(IOException.class, () -> LogWriter.append(group, false, false, false, false));
+        assertTrue(!log.exists() || log.length() == 0);
+    }
+
+    @Test
+    void malformedJsonFailsTheImport() throws IOException {
+        File json = input("a.json", "[{\"user\":\"x\",\"date\":\"2024-01-01\",\"category\":\"STUDY\",\"minutes\":5},{\"user\":");
+        assertThrows(IOException.class, () -> importer(null).run(json, false));
+        assertTrue(!log.exists() || log.length() == 0);
+    }
+
+    @Test
+    void unknownMappingTargetIsRejected() {
+        assertThrows(IllegalArgumentException.class, () -> new BulkImport(null, Collections.singletonMap("running", "CARDIO")));
+    }
+}
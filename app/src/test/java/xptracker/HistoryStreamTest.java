@@ -0,0 +1,69 @@
+// HistoryStreamTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Map;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 The stream view of the log agrees with the index
+class HistoryStreamTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void streamTotalsMatchTheIndex() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 40_000, 50, 1);
+        Files.write(log.toPath(), "2025-01-01,CODING,x,1\n".getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        TestLogs.write(log, 100, 50, 2);
+        assertTrue(log.length() > 2 * HistoryStream.SLICE, "log should span several stream slices");
+
+        HistoryIndex serial = TestLogs.serialIndex(log);
+        try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+            TestLogs.assertSameTotals(serial.users, records.collect(HistoryStream.totalsByUser()));
+        }
+        try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+            TestLogs.assertSameTotals(serial.users, records.parallel().collect(HistoryStream.totalsByUser()));
+        }
+    }
+
+    @Test
+    void oneUsersStreamMatchesTheirIndexRow() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 5_000, 20, 3);
+        HistoryIndex idx = TestLogs.serialIndex(log);
+        for (Map.Entry<String,UserTotals> u : idx.users.entrySet()) {
+            try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, log, u.getKey())) {
+                TestLogs.assertSameTotals(u.getKey(), u.getValue(), records.collect(HistoryStream.totals()));
+            }
+        }
+        assertEquals(20, idx.users.size());
+    }
+
+    // More sessions than vm.max_map_count (65530): reading them must not need a mapping each.
+    @Test
+    void aUserWithMoreSessionsThanMappingsCanBeRead() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 70_000, 1, 4);
+        HistoryIndex idx = TestLogs.serialIndex(log);
+        UserTotals user0 = idx.users.get("user0");
+        assertEquals(70_000, user0.sessions().length);
+        try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, log, "user0")) {
+            TestLogs.assertSameTotals("user0", user0, records.collect(HistoryStream.totals()));
+        }
+        try (Stream<HistoryRecord> records = HistoryStream.ofUser(idx, log, "user0")) {
+            TestLogs.assertSameTotals("user0", user0, records.parallel().collect(HistoryStream.totals()));
+        }
+    }
+}
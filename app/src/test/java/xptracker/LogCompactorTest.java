@@ -0,0 +1,84 @@
+// LogCompactorTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 Compaction folds old sessions without changing anyone's totals
+class LogCompactorTest {
+
+    @TempDir
+    File dir;
+
+    @Test
+    void perUserTotalsAreUnchanged() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 3_000, 12, 7);
+        int cutoff = (int) LocalDate.of(2025, 1, 1).toEpochDay();
+        Map<String,UserTotals> before = TestLogs.serialIndex(log).users;
+        Map<String,Long> minutesBefore = minutes(log);
+        Map<String,List<String>> recentBefore = entriesSince(log, cutoff);
+        long lengthBefore = log.length();
+
+        LogCompactor.compact(log, cutoff);
+
+        Map<String,UserTotals> after = TestLogs.serialIndex(log).users;
+        assertTrue(log.length() < lengthBefore, "old sessions should have been folded");
+        assertEquals(new TreeMap<>(before).keySet(), new TreeMap<>(after).keySet());
+        for (Map.Entry<String,UserTotals> u : before.entrySet()) {
+            UserTotals a = after.get(u.getKey());
+            assertEquals(u.getValue().totalXP, a.totalXP, u.getKey() + " XP");
+            assertArrayEquals(TestLogs.trim(u.getValue().xpByCategory), TestLogs.trim(a.xpByCategory), u.getKey() + " XP by category");
+        }
+        assertTrue(entries(after) < entries(before), "same-day entries should have been rolled up");
+        assertEquals(minutesBefore, minutes(log));
+        assertEquals(recentBefore, entriesSince(log, cutoff), "entries on or after the cutoff are kept as they were");
+    }
+
+    @Test
+    void compactingTwiceChangesNothingMore() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 500, 3, 8);
+        int cutoff = (int) LocalDate.of(2025, 1, 1).toEpochDay();
+        LogCompactor.compact(log, cutoff);
+        Map<String,UserTotals> once = TestLogs.serialIndex(log).users;
+        LogCompactor.compact(log, cutoff);
+        TestLogs.assertSameTotals(once, TestLogs.serialIndex(log).users);
+    }
+
+    private static long entries(Map<String,UserTotals> users) {
+        return users.values().stream().mapToLong(t -> t.entries).sum();
+    }
+
+    private static Map<String,Long> minutes(File log) throws IOException {
+        try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+            return records.collect(Collectors.groupingBy(r -> r.user, TreeMap::new, Collectors.summingLong(r -> r.minutes)));
+        }
+    }
+
+    // Each user's entries dated on or after 'fromDay', in a canonical order.
+    private static Map<String,List<String>> entriesSince(File log, int fromDay) throws IOException {
+        Map<String,List<String>> byUser = new TreeMap<>();
+        try (Stream<HistoryRecord> records = HistoryStream.of(log)) {
+            records.filter(r -> r.epochDay >= fromDay)
+                   .forEach(r -> byUser.computeIfAbsent(r.user, u -> new ArrayList<>()).add(r.toEntry().toCSV()));
+        }
+        for (List<String> entries : byUser.values()) Collections.sort(entries);
+        return byUser;
+    }
+}
@@ -0,0 +1,153 @@
+// MappedLogParserTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 Damaged lines are skipped, never credited to anyone
+class MappedLogParserTest {
+
+    @TempDir
+    File dir;
+
+    private static String header(String user) {
+        return MappedLogParser.sealHeader(MappedLogParser.HEADER_PREFIX + user + " on 2025-01-01T10:00 ===");
+    }
+
+    private static String record(String user, String csv) {
+        return MappedLogParser.sealRecord(user, csv);
+    }
+
+    private HistoryIndex parse(String text) throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        Files.write(log.toPath(), text.getBytes(StandardCharsets.US_ASCII));
+        return TestLogs.serialIndex(log);
+    }
+
+    @Test
+    void cleanLogHasNothingSkipped() throws IOException {
+        HistoryIndex idx = parse(header("alice") + "\n"
+                + record("alice", "2025-01-01,CODING,120,720") + "\n"
+                + record("alice", "2025-01-01,STUDY,10,50") + "\n\n");
+        assertEquals(2, idx.get("alice").entries);
+        assertEquals(770, idx.get("alice").totalXP);
+        assertEquals(0, idx.tail.skipped);
+    }
+
+    @Test
+    void recordFailingItsSealIsSkipped() throws IOException {
+        String good = record("alice", "2025-01-01,CODING,120,720");
+        String bad = record("alice", "2025-01-01,CODING,120,720").replace(",720,", ",920,"); // bit rot in the XP field
+        HistoryIndex idx = parse(header("alice") + "\n" + good + "\n" + bad + "\n");
+        assertEquals(1, idx.get("alice").entries);
+        assertEquals(720, idx.get("alice").totalXP);
+        assertEquals(bad.length() + 1, idx.tail.skipped);
+    }
+
+    @Test
+    void recordSealedForAnotherUserIsSkipped() throws IOException {
+        // A line that belongs to bob's session but ended up after alice's header (e.g. interleaved writers).
+        HistoryIndex idx = parse(header("alice") + "\n" + record("bob", "2025-01-01,CODING,120,720") + "\n");
+        assertEquals(0, idx.get("alice").entries);
+        assertTrue(idx.tail.skipped > 0);
+    }
+
+    @Test
+    void damagedHeaderCreditsItsRecordsToNobody() throws IOException {
+        String header = header("alice").replace("alice", "alicf");
+        HistoryIndex idx = parse(header("bob") + "\n" + record("bob", "2025-01-01,STUDY,10,50") + "\n"
+                + header + "\n" + record("alice", "2025-01-01,CODING,120,720") + "\n");
+        assertEquals(1, idx.get("bob").entries, "the damaged header ends bob's session too");
+        assertEquals(0, idx.get("alice").entries);
+        assertEquals(0, idx.get("alicf").entries);
+    }
+
+    @Test
+    void tornLineBeforeAHeaderIsSkipped() throws IOException {
+        // A writer died mid-line and the next one appended its header straight after it.
+        String torn = record("alice", "2025-01-01,CODING,120,720").substring(0, 14);
+        HistoryIndex idx = parse(header("alice") + "\n" + torn + header("bob") + "\n"
+                + record("bob", "2025-01-02,STUDY,10,50") + "\n");
+        assertEquals(0, idx.get("alice").entries);
+        assertEquals(1, idx.get("bob").entries);
+        assertEquals(torn.length(), idx.tail.skipped);
+    }
+
+    @Test
+    void lineTornInsideItsLastFieldIsSkipped() throws IOException {
+        // "2025-01-01,CODING,120,72" still has four fields, but in a sealed session its missing seal gives it away.
+        File log = new File(dir, "xp_log.txt");
+        String good = record("alice", "2025-01-01,STUDY,10,50");
+        String torn = record("alice", "2025-01-01,CODING,120,720").substring(0, 24);
+        Files.write(log.toPath(), (header("alice") + "\n" + good + "\n" + torn).getBytes(StandardCharsets.US_ASCII));
+        ActivityEntry next = new ActivityEntry("2025-01-02", "STUDY", 20, 100, "alice");
+        LogWriter.append(List.of(new LogWriter.Batch(log, "alice", List.of(next))), false, false, false, false);
+
+        HistoryIndex idx = TestLogs.serialIndex(log);
+        assertEquals(2, idx.get("alice").entries);
+        assertEquals(150, idx.get("alice").totalXP);
+        assertEquals(torn.length() + 1, idx.tail.skipped);
+    }
+
+    @Test
+    void unsealedLogStillParses() throws IOException {
+        // Written with -Dxptracker.checksums=false (or before checksums existed).
+        HistoryIndex idx = parse(MappedLogParser.HEADER_PREFIX + "alice on 2025-01-01T10:00 ===\n"
+                + "2025-01-01,CODING,120,720\n2025-01-01,STUDY,10,50,,\n");
+        assertEquals(2, idx.get("alice").entries);
+        assertEquals(0, idx.tail.skipped);
+    }
+
+    @Test
+    void garbageLinesAreSkipped() throws IOException {
+        String junk = "\u0000\u0000\u0000 not a record";
+        HistoryIndex idx = parse(header("alice") + "\n" + junk + "\n" + record("alice", "2025-01-01,STUDY,10,50") + "\n");
+        assertEquals(1, idx.get("alice").entries);
+        assertEquals(junk.length() + 1, idx.tail.skipped);
+    }
+
+    @Test
+    void partialLastLineWaitsForTheRest() throws IOException {
+        String line = record("alice", "2025-01-01,CODING,120,720");
+        HistoryIndex idx = parse(header("alice") + "\n" + line.substring(0, 20));
+        assertEquals(0, idx.get("alice").entries);
+        assertEquals(0, idx.tail.skipped, "a line still being written is not damage");
+        assertNull(idx.users.get("bob"));
+    }
+
+    @Test
+    void progressIsReportedWellInsideAWindow() throws IOException {
+        File log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 20_000, 20, 7);
+        assertTrue(log.length() > 2 << 20 && log.length() < 16 << 20, "a few MB: one mapped window");
+        HistoryIndex idx = new HistoryIndex();
+        List<Long> offsets = new ArrayList<>();
+        idx.onChunk = i -> offsets.add(i.tail.offset);
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            MappedLogParser.parse(ch, ch.size(), idx.tail, idx);
+            assertTrue(offsets.size() >= log.length() >> 20, offsets.size() + " reports for " + log.length() + " bytes");
+            ByteBuffer nl = ByteBuffer.allocate(1);
+            for (int i = 0; i < offsets.size(); i++) {
+                if (i > 0) assertTrue(offsets.get(i) > offsets.get(i - 1));
+                ch.read(nl.clear(), offsets.get(i) - 1);
+                assertEquals('\n', nl.get(0), "report at " + offsets.get(i) + " is not on a line boundary");
+            }
+        }
+        assertEquals(log.length(), (long) offsets.get(offsets.size() - 1));
+        TestLogs.assertSameTotals(TestLogs.serialIndex(log).users, idx.users);
+    }
+}
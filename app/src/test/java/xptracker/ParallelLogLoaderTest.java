@@ -0,0 +1,124 @@
+// ParallelLogLoaderTest
+package xptracker;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 Fork-join index build: same result as one thread
+class ParallelLogLoaderTest {
+
+    @TempDir
+    static File dir;
+    static File log;
+
+    // Big enough for several ranges (MIN_RANGE is 4 MB), with damage and a torn line in the middle.
+    @BeforeAll
+    static void writeLog() throws IOException {
+        log = new File(dir, "xp_log.txt");
+        TestLogs.write(log, 45_000, 300, 11);
+        String torn = MappedLogParser.sealRecord("user1", "2025-01-01,CODING,120,720").substring(0, 20);
+        Files.write(log.toPath(), ("garbage line\n" + torn).getBytes(StandardCharsets.US_ASCII), StandardOpenOption.APPEND);
+        TestLogs.write(log, 45_000, 300, 12);
+        assertTrue(log.length() > 4 * (4L << 20), "log should be cut into several ranges");
+    }
+
+    @Test
+    void parallelIndexEqualsSerialIndex() throws IOException {
+        HistoryIndex serial = TestLogs.serialIndex(log);
+        HistoryIndex parallel = new HistoryIndex();
+        parallel.tail.read(log, parallel, (ch, end) -> aggregate(parallel, ch, end));
+        assertSameIndex(serial, parallel);
+    }
+
+    @Test
+    void parallelCatchUpContinuesASerialRead() throws IOException {
+        HistoryIndex serial = TestLogs.serialIndex(log);
+        // Read the first part on one thread (stopping mid-session), then the rest in parallel.
+        HistoryIndex mixed = new HistoryIndex();
+        mixed.tail.read(log, mixed, (ch, end) -> {
+            MappedLogParser.parse(ch, end / 3, mixed.tail, mixed);
+            aggregate(mixed, ch, end);
+        });
+        assertSameIndex(serial, mixed);
+    }
+
+    @Test
+    void parallelCatchUpFromASessionBoundary() throws IOException {
+        HistoryIndex serial = TestLogs.serialIndex(log);
+        // The serial part ends right before a header, with the previous session's user still current.
+        HistoryIndex mixed = new HistoryIndex();
+        mixed.tail.read(log, mixed, (ch, end) -> {
+            MappedLogParser.parse(ch, ParallelLogLoader.nextHeader(ch, end / 3, end), mixed.tail, mixed);
+            assertNotNull(mixed.tail.currentUser);
+            aggregate(mixed, ch, end);
+        });
+        assertSameIndex(serial, mixed);
+    }
+
+    @Test
+    void finishedRangesArePublishedAsTheyFinish() throws IOException {
+        HistoryIndex serial = TestLogs.serialIndex(log);
+        long total = serial.users.values().stream().mapToLong(t -> t.totalXP).sum();
+        List<Long> published = new ArrayList<>();
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            int ranges = ParallelLogLoader.cuts(ch, 0, ch.size()).length - 1;
+            ParallelLogLoader.aggregate(ch, ch.size(), new LogTail(), new BlockIndex(),
+                    done -> published.add(done.values().stream().mapToLong(t -> t.totalXP).sum()));
+            assertEquals(ranges, published.size());
+        }
+        for (int i = 1; i < published.size(); i++) assertTrue(published.get(i) > published.get(i - 1));
+        assertEquals(total, (long) published.get(published.size() - 1));
+    }
+
+    @Test
+    void throwingFromTheCallbackAbandonsTheRead() throws IOException {
+        CancellationException stop = new CancellationException("stop");
+        LogTail state = new LogTail();
+        try (FileChannel ch = FileChannel.open(log.toPath(), StandardOpenOption.READ)) {
+            assertSame(stop, assertThrows(CancellationException.class, () ->
+                    ParallelLogLoader.aggregate(ch, ch.size(), state, new BlockIndex(), done -> { throw stop; })));
+        }
+        assertEquals(0, state.offset);
+        assertEquals(0, state.skipped);
+    }
+
+    private static void aggregate(HistoryIndex idx, FileChannel ch, long end) throws IOException {
+        for (Map.Entry<String,UserTotals> e : ParallelLogLoader.aggregate(ch, end, idx.tail, idx.blocks).entrySet()) {
+            idx.users.merge(e.getKey(), e.getValue(), UserTotals::merge);
+        }
+    }
+
+    private static void assertSameIndex(HistoryIndex expected, HistoryIndex actual) {
+        TestLogs.assertSameTotals(expected.users, actual.users);
+        for (Map.Entry<String,UserTotals> u : expected.users.entrySet()) {
+            UserTotals a = actual.users.get(u.getKey());
+            assertArrayEquals(Arrays.copyOf(u.getValue().sessions, u.getValue().sessionCount),
+                    Arrays.copyOf(a.sessions, a.sessionCount), u.getKey() + " sessions");
+        }
+        assertEquals(expected.blocks.encode(), actual.blocks.encode());
+        assertEquals(expected.tail.offset, actual.tail.offset);
+        assertEquals(expected.tail.currentUser, actual.tail.currentUser);
+        assertEquals(expected.tail.skipped, actual.tail.skipped);
+        assertTrue(expected.tail.skipped > 0);
+    }
+}
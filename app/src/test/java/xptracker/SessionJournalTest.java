@@ -0,0 +1,148 @@
+// SessionJournalTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.DataOutputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+//                                                                 Crash journal: what wasn't saved comes back on the next start
+class SessionJournalTest {
+
+    @TempDir
+    File dir;
+
+    private final List<ActivityEntry> added = Arrays.asList(
+            new ActivityEntry("2025-03-01", "STUDY", 30, 150, "alice"),
+            new ActivityEntry("2025-03-01", "CODING", 300, 1800, "alice"),
+            new ActivityEntry("2025-03-02", "WRITING", 12, 48, "alice"));
+
+    // The writer never gets a reset (the session wasn't saved) before the process goes away.
+    private File crashedJournal() throws IOException {
+        File file = new File(dir, "xp_journal.alice.wal");
+        SessionJournal journal = open(file);
+        for (ActivityEntry e : added) journal.append(e);
+        journal.close();
+        return file;
+    }
+
+    private SessionJournal open(File file) throws IOException {
+        return new SessionJournal(file, "alice", new File(dir, "xp_log.txt"), SessionJournal.Sync.ALWAYS, ex -> { throw new AssertionError(ex); });
+    }
+
+    @Test
+    void unsavedEntriesAreReplayed() throws IOException {
+        SessionJournal reopened = open(crashedJournal());
+        assertEquals(TestLogs.csv(added), TestLogs.csv(reopened.recovered()));
+        reopened.close();
+    }
+
+    @Test
+    void savedEntriesAreNotReplayed() throws IOException {
+        File file = new File(dir, "xp_journal.alice.wal");
+        SessionJournal journal = open(file);
+        for (ActivityEntry e : added) journal.append(e);
+        save(added, journal.mark(), false);
+        journal.reset(List.of());
+        ActivityEntry after = new ActivityEntry("2025-03-03", "WORKOUT", 20, 160, "alice");
+        journal.append(after);
+        journal.close();
+        assertFalse(new File(file.getPath() + ".tmp").exists());
+
+        // The log's stamp is of the generation the reset replaced, so it doesn't hide 'after'.
+        SessionJournal reopened = open(file);
+        assertEquals(TestLogs.csv(List.of(after)), TestLogs.csv(reopened.recovered()));
+        reopened.close();
+    }
+
+    @Test
+    void entriesSavedBeforeACrashAreNotReplayed() throws IOException {
+        for (boolean binary : new boolean[] { false, true }) {
+            File file = new File(dir, "xp_journal.alice.wal");
+            Files.deleteIfExists(file.toPath());
+            Files.deleteIfExists(new File(dir, "xp_log.txt").toPath());
+            SessionJournal journal = open(file);
+            for (ActivityEntry e : added) journal.append(e);
+            save(added, journal.mark(), binary);
+            ActivityEntry after = new ActivityEntry("2025-03-03", "WORKOUT", 20, 160, "alice");
+            journal.append(after);
+            journal.close();   // the save is in the log, but the process died before the journal was reset
+            ActivityEntry bob = new ActivityEntry("2025-03-03", "STUDY", 10, 50, "bob");
+            LogWriter.append(List.of(new LogWriter.Batch(new File(dir, "xp_log.txt"), "bob", List.of(bob))), binary, false, false, false);
+
+            SessionJournal reopened = open(file);
+            assertEquals(TestLogs.csv(List.of(after)), TestLogs.csv(reopened.recovered()), binary ? "xpb" : "text");
+            reopened.close();
+            reopened = open(file);   // rewritten without the saved entries
+            assertEquals(TestLogs.csv(List.of(after)), TestLogs.csv(reopened.recovered()), binary ? "xpb" : "text");
+            reopened.close();
+        }
+    }
+
+    @Test
+    void versionOneJournalIsReplayed() throws IOException {
+        File file = new File(dir, "xp_journal.alice.wal");
+        try (DataOutputStream out = new DataOutputStream(new FileOutputStream(file))) {
+            out.write(new byte[] { 'X', 'P', 'J', 1 });
+            for (ActivityEntry e : added) {
+                byte[] payload = e.toCSV().getBytes(StandardCharsets.UTF_8);
+                CRC32 crc = new CRC32();
+                crc.update(payload);
+                out.writeInt(payload.length);
+                out.writeInt((int) crc.getValue());
+                out.write(payload);
+            }
+        }
+        SessionJournal reopened = open(file);
+        assertEquals(TestLogs.csv(added), TestLogs.csv(reopened.recovered()));
+        reopened.close();
+        assertEquals(2, Files.readAllBytes(file.toPath())[3], "rewritten in the current format");
+    }
+
+    private void save(List<ActivityEntry> entries, SessionJournal.Mark mark, boolean binary) throws IOException {
+        LogWriter.append(List.of(new LogWriter.Batch(new File(dir, "xp_log.txt"), "alice", entries, mark)), binary, false, false, false);
+    }
+
+    @Test
+    void tornLastRecordIsDropped() throws IOException {
+        File file = crashedJournal();
+        long complete = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(complete);
+            raf.writeInt(40);          // length of a record whose payload never made it to disk
+            raf.writeInt(0x1234);
+            raf.write("2025-03-0".getBytes("US-ASCII"));
+        }
+        SessionJournal reopened = open(file);
+        assertEquals(TestLogs.csv(added), TestLogs.csv(reopened.recovered()));
+        reopened.close();
+        assertEquals(complete, file.length(), "the torn tail is cut off so new records follow the good ones");
+    }
+
+    @Test
+    void recordWithBadChecksumEndsTheReplay() throws IOException {
+        File file = crashedJournal();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(file.length() - 1);
+            raf.write('9');            // last payload byte changed: its CRC no longer matches
+        }
+        SessionJournal reopened = open(file);
+        List<String> expected = new ArrayList<>(TestLogs.csv(added));
+        expected.remove(expected.size() - 1);
+        assertEquals(expected, TestLogs.csv(reopened.recovered()));
+        reopened.close();
+    }
+}
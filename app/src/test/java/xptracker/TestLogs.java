@@ -0,0 +1,78 @@
+// TestLogs
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.TreeMap;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//                                                                 Shared helpers: write logs the way the app does, compare totals
+final class TestLogs {
+    static final String[] CATEGORIES = { "STUDY", "CODING", "WORKOUT", "WRITING" };
+
+    private TestLogs() {}
+
+    // 'sessions' sessions spread over 'users' users (user0..), 1-8 entries each, through the app's own writer.
+    static void write(File log, int sessions, int users, long seed) throws IOException {
+        SplittableRandom rnd = new SplittableRandom(seed);
+        List<LogWriter.Batch> group = new ArrayList<>();
+        for (int s = 0; s < sessions; s++) {
+            String user = "user" + rnd.nextInt(users);
+            List<ActivityEntry> entries = new ArrayList<>();
+            for (int n = 1 + rnd.nextInt(8); n > 0; n--) entries.add(entry(rnd, user));
+            group.add(new LogWriter.Batch(log, user, entries));
+            if (group.size() == 1000) {
+                LogWriter.append(group, false, false, false, false);
+                group.clear();
+            }
+        }
+        if (!group.isEmpty()) LogWriter.append(group, false, false, false, false);
+    }
+
+    static ActivityEntry entry(SplittableRandom rnd, String user) {
+        String category = CATEGORIES[rnd.nextInt(CATEGORIES.length)];
+        int minutes = 1 + rnd.nextInt(ActivityEntry.MAX_MINUTES);
+        String date = LocalDate.of(2024, 1, 1).plusDays(rnd.nextInt(700)).toString();
+        return new ActivityEntry(date, category, minutes, minutes * Categories.DEFAULT_MULTIPLIERS.get(category), user);
+    }
+
+    // A fully caught-up index, parsed on this thread only.
+    static HistoryIndex serialIndex(File log) throws IOException {
+        HistoryIndex idx = new HistoryIndex();
+        idx.tail.read(log, idx, (ch, end) -> MappedLogParser.parse(ch, end, idx.tail, idx));
+        return idx;
+    }
+
+    static void assertSameTotals(Map<String,UserTotals> expected, Map<String,UserTotals> actual) {
+        assertEquals(new TreeMap<>(expected).keySet(), new TreeMap<>(actual).keySet());
+        for (Map.Entry<String,UserTotals> e : expected.entrySet()) assertSameTotals(e.getKey(), e.getValue(), actual.get(e.getKey()));
+    }
+
+    static void assertSameTotals(String user, UserTotals expected, UserTotals actual) {
+        assertEquals(expected.entries, actual.entries, user + " entries");
+        assertEquals(expected.totalXP, actual.totalXP, user + " XP");
+        assertArrayEquals(trim(expected.xpByCategory), trim(actual.xpByCategory), user + " XP by category");
+        assertEquals(csv(expected.recentEntries(user)), csv(actual.recentEntries(user)), user + " recent entries");
+    }
+
+    static List<String> csv(List<ActivityEntry> entries) {
+        List<String> lines = new ArrayList<>();
+        for (ActivityEntry e : entries) lines.add(e.toCSV());
+        return lines;
+    }
+
+    // Category arrays grow on demand, so compare without trailing zeros.
+    static long[] trim(long[] xp) {
+        int n = xp.length;
+        while (n > 0 && xp[n - 1] == 0) n--;
+        return Arrays.copyOf(xp, n);
+    }
+}
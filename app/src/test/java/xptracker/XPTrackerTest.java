@@ -0,0 +1,77 @@
+// XPTrackerTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+//                                                                 Command line: headless queries, in a JVM of their own
+// Each command runs in a child JVM with -verbose:class, so the test sees every class the query loaded.
+class XPTrackerTest {
+
+    @TempDir
+    File home;
+
+    @Test
+    void levelRunsWithoutTheWindowOrAwt() throws Exception {
+        TestLogs.write(new File(home, DataFiles.LOG_NAME), 300, 3, 24);
+        UserTotals t = TestLogs.serialIndex(new File(home, DataFiles.LOG_NAME)).users.get("user0");
+
+        List<String> out = headless("--level", "user0");
+        assertEquals(List.of("{\"user\":\"user0\",\"level\":" + (t.totalXP / 1000 + 1)
+                + ",\"totalXP\":" + t.totalXP + ",\"xpIntoLevel\":" + (t.totalXP % 1000)
+                + ",\"xpPerLevel\":1000}"), out);
+    }
+
+    @Test
+    void totalsRunWithoutTheWindowOrAwt() throws Exception {
+        TestLogs.write(new File(home, DataFiles.LOG_NAME), 300, 3, 25);
+        Map<String,UserTotals> index = TestLogs.serialIndex(new File(home, DataFiles.LOG_NAME)).users;
+
+        List<String> all = headless("--totals");
+        assertEquals(index.size(), all.size());
+        for (String user : index.keySet()) {
+            assertTrue(all.stream().anyMatch(l -> l.startsWith("{\"user\":\"" + user + "\",\"entries\":" + index.get(user).entries
+                    + ",\"totalXP\":" + index.get(user).totalXP + ",")), user);
+        }
+
+        List<String> one = headless("--totals", "user1", "--since", "2024-01-01", "--until", "2024-12-31");
+        assertEquals(1, one.size());
+        assertTrue(one.get(0).startsWith("{\"user\":\"user1\",\"since\":\"2024-01-01\",\"until\":\"2024-12-31\","), one.get(0));
+    }
+
+    // The command's JSON lines. Fails if it exits non-zero or loads XPTrackerGUI or any AWT/Swing class.
+    private List<String> headless(String... args) throws IOException, InterruptedException {
+        String classes = Paths.get(XPTracker.class.getProtectionDomain().getCodeSource().getLocation().getPath()).toString();
+        List<String> cmd = new ArrayList<>(List.of(
+                Paths.get(System.getProperty("java.home"), "bin", "java").toString(),
+                "-Djava.awt.headless=true", "-Dxptracker.home=" + home.getPath(), "-verbose:class",
+                "-cp", classes, "xptracker.XPTracker"));
+        cmd.addAll(Arrays.asList(args));
+        Process p = new ProcessBuilder(cmd).redirectErrorStream(true).start();
+        List<String> lines = Arrays.asList(new String(p.getInputStream().readAllBytes(), Charset.defaultCharset()).split("\\R"));
+        assertEquals(0, p.waitFor(), String.join("\n", lines));
+
+        List<String> loaded = lines.stream().filter(l -> l.contains("[class,load]"))
+                .map(l -> l.substring(l.indexOf("[class,load]") + "[class,load]".length()).trim())
+                .collect(Collectors.toList());
+        assertTrue(loaded.stream().anyMatch(c -> c.startsWith("xptracker.XPTracker ")), "-verbose:class output not recognised");
+        List<String> gui = loaded.stream()
+                .filter(c -> c.startsWith("xptracker.XPTrackerGUI") || c.startsWith("java.awt.") || c.startsWith("javax.swing."))
+                .collect(Collectors.toList());
+        assertTrue(gui.isEmpty(), "loaded " + gui);
+        return lines.stream().filter(l -> l.startsWith("{")).collect(Collectors.toList());
+    }
+}
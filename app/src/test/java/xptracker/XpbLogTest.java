@@ -0,0 +1,140 @@
+// XpbLogTest
+package xptracker;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+//                                                                 Damaged .xpb blocks are skipped and counted, CRC or not
+class XpbLogTest {
+    private static final int UNCHECKED = 0x58424C4B;   // "XBLK"
+    // Offsets into a one-entry block of user "bob" and category CODING: header, savedAt, n, then the dictionaries.
+    private static final int USER_COUNT = 8 + 8 + 4;
+    private static final int FIRST_CATEGORY = USER_COUNT + 2 + 2 + "bob".length() + 2 + 2 + "CODING".length();
+
+    @TempDir
+    File dir;
+
+    private File log;
+    private long bob, carol;   // where bob's and carol's blocks start
+
+    // alice, bob and carol each save one entry; bob's block then loses its CRC, so only readBlock can catch damage.
+    private void writeLog() throws IOException {
+        log = new File(dir, "xp_log.xpb");
+        XpbLog.append(log, List.of(entry("alice")));
+        bob = log.length();
+        XpbLog.append(log, List.of(entry("bob")));
+        carol = log.length();
+        XpbLog.append(log, List.of(entry("carol")));
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(bob);
+            raf.writeInt(UNCHECKED);
+        }
+    }
+
+    private static ActivityEntry entry(String user) {
+        return new ActivityEntry("2025-01-01", "CODING", 30, 180, user);
+    }
+
+    private void damageBob(int at, int... bytes) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.seek(bob + at);
+            for (int b : bytes) raf.write(b);
+        }
+    }
+
+    // What the last append recorded in the lock sidecar as the end of the log.
+    private static long recordedEnd(File log) throws IOException {
+        return ByteBuffer.wrap(Files.readAllBytes(new File(log.getPath() + ".lock").toPath())).getLong();
+    }
+
+    private static HistoryIndex index(File log) throws IOException {
+        HistoryIndex idx = new HistoryIndex();
+        idx.tail.read(log, idx);
+        return idx;
+    }
+
+    private void assertBobSkipped() throws IOException {
+        HistoryIndex idx = index(log);
+        assertEquals(1, idx.get("alice").entries);
+        assertEquals(0, idx.get("bob").entries);
+        assertEquals(0, idx.get("bob").sessionCount, "no posting for a block that was skipped");
+        assertEquals(1, idx.get("carol").entries);
+        assertEquals(carol - bob, idx.tail.skipped);
+    }
+
+    @Test
+    void intactUncheckedBlockIsRead() throws IOException {
+        writeLog();
+        HistoryIndex idx = index(log);
+        assertEquals(1, idx.get("bob").entries);
+        assertEquals(0, idx.tail.skipped);
+    }
+
+    @Test
+    void categoryIndexOutOfRangeSkipsTheBlock() throws IOException {
+        writeLog();
+        damageBob(FIRST_CATEGORY, 200);
+        assertBobSkipped();
+    }
+
+    @Test
+    void dictionaryLongerThanTheBlockSkipsTheBlock() throws IOException {
+        writeLog();
+        damageBob(USER_COUNT, 0xFF, 0xFF);
+        assertBobSkipped();
+    }
+
+    @Test
+    void entryCountLongerThanTheColumnsSkipsTheBlock() throws IOException {
+        writeLog();
+        damageBob(USER_COUNT - 4, 0, 0, 1, 0);
+        assertBobSkipped();
+    }
+
+    @Test
+    void tornTailAfterTheRecordedEndIsCut() throws IOException {
+        File log = new File(dir, "xp_log.xpb");
+        XpbLog.append(log, List.of(entry("alice")));
+        assertEquals(log.length(), recordedEnd(log));
+        // Another writer died part way through its block, after the end this process recorded.
+        File other = new File(dir, "other.xpb");
+        XpbLog.append(other, List.of(entry("bob")));
+        byte[] block = Files.readAllBytes(other.toPath());
+        Files.write(log.toPath(), Arrays.copyOfRange(block, XpbLog.MAGIC.length, block.length - 5), StandardOpenOption.APPEND);
+
+        XpbLog.append(log, List.of(entry("carol")));
+        HistoryIndex idx = index(log);
+        assertEquals(1, idx.get("alice").entries);
+        assertEquals(0, idx.get("bob").entries);
+        assertEquals(1, idx.get("carol").entries);
+        assertEquals(0, idx.tail.skipped);
+        assertEquals(log.length(), recordedEnd(log));
+    }
+
+    @Test
+    void logShorterThanTheRecordedEndIsWalkedFromTheStart() throws IOException {
+        File log = new File(dir, "xp_log.xpb");
+        XpbLog.append(log, List.of(entry("alice")));
+        XpbLog.append(log, List.of(entry("bob")));
+        try (RandomAccessFile raf = new RandomAccessFile(log, "rw")) {
+            raf.setLength(log.length() - 5);    // bob's block lost its end (say, a restore from an older copy)
+        }
+        XpbLog.append(log, List.of(entry("carol")));
+        HistoryIndex idx = index(log);
+        assertEquals(1, idx.get("alice").entries);
+        assertEquals(0, idx.get("bob").entries);
+        assertEquals(1, idx.get("carol").entries);
+        assertEquals(0, idx.tail.skipped);
+    }
+}
@@ -0,0 +1,47 @@
+// BenchLogs
+package xptracker;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+
+//                                                                 Generated shared logs of 10K / 1M / 10M saved entries
+// Each size is written once to target/bench-logs/ and reused by later runs. Every trial copies it to the benchmark's
+// xp_log.txt (see -Dxptracker.home in the @Fork settings) and drops the sidecar index, so nothing carries over.
+@State(Scope.Benchmark)
+public class BenchLogs {
+
+    static final String HOME = "target/bench-home";      // the forked JVMs run with -Dxptracker.home=HOME
+    static final String USER = "user0";                  // the most active user: every benchmark reads their history
+    private static final int USERS = 2000;
+
+    @Param({"10000", "1000000", "10000000"})
+    public int entries;
+
+    File log;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        File cached = new File("target/bench-logs", "xp_log-" + entries + ".txt");
+        if (!cached.isFile()) generate(cached, entries);
+        log = DataFiles.file("xp_log.txt");
+        log.getParentFile().mkdirs();
+        Files.copy(cached.toPath(), log.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        Files.deleteIfExists(DataFiles.file("xp_log.idx").toPath());
+    }
+
+    // Clean logs (no damaged lines), so every size holds exactly 'entries' records.
+    static void generate(File target, long entries) throws IOException {
+        target.getParentFile().mkdirs();
+        File tmp = new File(target.getPath() + ".tmp");
+        LogGenerator g = new LogGenerator();
+        g.entries = entries;
+        g.users = USERS;
+        g.malformed = 0;
+        g.seed = 42;
+        g.write(tmp);
+        Files.move(tmp.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+    }
+}
@@ -0,0 +1,34 @@
+// EntryBenchmarks
+package xptracker;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+//                                                                 Formatting one saved line (independent of the log size)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class EntryBenchmarks {
+
+    ActivityEntry entry;
+
+    @Setup
+    public void setUp() {
+        entry = new ActivityEntry("2025-03-14", "CODING", 125, 750, "user0");
+    }
+
+    @Benchmark
+    public String toCSV() {
+        return entry.toCSV();
+    }
+
+    // What saveLog actually writes: the CSV line plus its checksum.
+    @Benchmark
+    public String toSealedLine() {
+        return MappedLogParser.sealRecord(entry.user, entry.toCSV());
+    }
+}
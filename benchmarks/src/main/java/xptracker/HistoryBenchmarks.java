@@ -0,0 +1,70 @@
+// HistoryBenchmarks
+package xptracker;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.time.LocalDate;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+//                                                                 Reading saved history: index rebuilds, streams, the History tab
+// Run with -prof gc for the allocation rate next to the throughput.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dxptracker.home=" + BenchLogs.HOME})
+@State(Scope.Thread)
+public class HistoryBenchmarks {
+
+    XPTrackerGUI gui;
+    int yearStart;
+
+    @Setup(Level.Trial)
+    public void setUp(BenchLogs logs) throws IOException {
+        gui = new XPTrackerGUI();
+        gui.buildHeadless(BenchLogs.USER);
+        gui.lookupHistory(BenchLogs.USER, Integer.MIN_VALUE, Integer.MAX_VALUE, null); // build and save the index once
+        yearStart = (int) LocalDate.now().withDayOfYear(1).toEpochDay();
+    }
+
+    // Startup without a usable sidecar index: parse the whole log into per-user totals.
+    @Benchmark
+    public HistoryIndex rebuildIndex(BenchLogs logs) throws IOException {
+        HistoryIndex idx = new HistoryIndex();
+        idx.catchUp(logs.log);
+        return idx;
+    }
+
+    // What used to be loadHistory: one user's saved entries, streamed through the index's session list.
+    @Benchmark
+    public UserTotals loadHistory() throws IOException {
+        return gui.collectHistory(BenchLogs.USER, Integer.MIN_VALUE, Integer.MAX_VALUE, HistoryStream.totals());
+    }
+
+    // Every user's totals from a full scan of the log.
+    @Benchmark
+    public Map<String, UserTotals> totalsByUser(BenchLogs logs) throws IOException {
+        try (var records = HistoryStream.of(logs.log)) {
+            return records.collect(HistoryStream.totalsByUser());
+        }
+    }
+
+    // The History tab's "View" for one user, all time: index lookup plus rendering the text and chart.
+    @Benchmark
+    public void viewHistoryByUser(Blackhole bh) throws IOException {
+        UserTotals t = gui.lookupHistory(BenchLogs.USER, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        gui.showHistory(BenchLogs.USER, Integer.MIN_VALUE, Integer.MAX_VALUE, t, false);
+        bh.consume(t);
+    }
+
+    // Same, for "This year": only the sessions dated this year are read.
+    @Benchmark
+    public void viewHistoryByUserThisYear(Blackhole bh) throws IOException {
+        UserTotals t = gui.lookupHistory(BenchLogs.USER, yearStart, Integer.MAX_VALUE, null);
+        gui.showHistory(BenchLogs.USER, yearStart, Integer.MAX_VALUE, t, false);
+        bh.consume(t);
+    }
+}
@@ -0,0 +1,315 @@
+// LogGenerator
+package xptracker;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.time.LocalDate;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+
+//                                                                 Synthetic shared logs for scale testing
+// Writes xp_log.txt exactly the way saveLog does: "=== Session for <user> on <timestamp> ===", one
+// "date,category,minutes,xp" line per entry, a blank line after each session, checksums per -Dxptracker.checksums.
+// Users are picked from a Zipf distribution (a few heavy users, a long tail), sessions are spread over the last
+// --days days in date order, and --malformed of the lines are damaged the ways real logs get damaged.
+//
+//   java -cp benchmarks/target/benchmarks.jar xptracker.LogGenerator --out big.txt --size 4G --users 5000 --seed 7
+//
+// The file is built in independent chunks of CHUNK entries on all cores, so the same options and seed always
+// give the same bytes regardless of the thread count.
+public class LogGenerator {
+
+    private static final int CHUNK = 1 << 18;                          // entries per chunk (~10 MB of text)
+    private static final String[] CATEGORIES = {"STUDY", "CODING", "WORKOUT", "WRITING"};
+    private static final int[] MULTIPLIER = {5, 6, 8, 4};              // the app's defaults (see defaultMultipliers)
+    private static final Charset CS = Charset.defaultCharset();
+    private static final byte[] NL = System.lineSeparator().getBytes(CS);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(CS);
+
+    long entries = 1_000_000;         // records to write (--size sets this from a byte target instead)
+    int users = 2000;
+    double skew = 1.0;                // Zipf exponent: 0 = every user equally active
+    int sessionSize = 12;             // mean entries per session (1 .. 2x this)
+    int days = 730;                   // the sessions cover today-days+1 .. today
+    double malformed = 0.0005;        // fraction of lines written damaged
+    long seed = 1;
+    boolean checksums = MappedLogParser.CHECKSUMS;
+    int threads = Runtime.getRuntime().availableProcessors();
+
+    // What was written.
+    long bytes, sessions, records, damaged;
+
+    private double[] cdf;             // cumulative Zipf weights over user ranks
+    private byte[][] names;
+    private int[] nameCrcs;
+    private byte[][] categories;
+    private long lastDay;
+
+    public static void main(String[] args) throws IOException {
+        LogGenerator g = new LogGenerator();
+        File out = new File("xp_log.txt");
+        long size = -1;
+        for (int i = 0; i < args.length; i++) {
+            String opt = args[i];
+            if (i + 1 >= args.length) usage("missing value for " + opt);
+            String v = args[++i];
+            try {
+                switch (opt) {
+                    case "--out": out = new File(v); break;
+                    case "--entries": g.entries = Long.parseLong(v); break;
+                    case "--size": size = parseSize(v); break;
+                    case "--users": g.users = Integer.parseInt(v); break;
+                    case "--skew": g.skew = Double.parseDouble(v); break;
+                    case "--session": g.sessionSize = Integer.parseInt(v); break;
+                    case "--days": g.days = Integer.parseInt(v); break;
+                    case "--malformed": g.malformed = Double.parseDouble(v); break;
+                    case "--seed": g.seed = Long.parseLong(v); break;
+                    case "--checksums": g.checksums = Boolean.parseBoolean(v); break;
+                    case "--threads": g.threads = Integer.parseInt(v); break;
+                    default: usage("unknown option " + opt);
+                }
+            } catch (NumberFormatException ex) {
+                usage("bad value for " + opt + ": " + v);
+            }
+        }
+        if (g.users < 1 || g.sessionSize < 1 || g.days < 1 || g.threads < 1 || g.malformed < 0 || g.malformed > 1) usage("out of range");
+        if (size >= 0) g.entries = g.entriesFor(size);
+        long start = System.nanoTime();
+        g.write(out);
+        double sec = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%s: %,d bytes, %,d entries in %,d sessions, %,d damaged lines, %.1f s (%.0f MB/s)%n",
+                out, g.bytes, g.records, g.sessions, g.damaged, sec, g.bytes / sec / 1e6);
+    }
+
+    private static void usage(String why) {
+        System.err.println(why);
+        System.err.println("options: --out FILE --entries N | --size N[K|M|G] --users N --skew S --session N --days N"
+                + " --malformed RATE --seed N --checksums true|false --threads N");
+        System.exit(2);
+    }
+
+    private static long parseSize(String v) {
+        long unit = 1;
+        switch (Character.toUpperCase(v.charAt(v.length() - 1))) {
+            case 'K': unit = 1L << 10; break;
+            case 'M': unit = 1L << 20; break;
+            case 'G': unit = 1L << 30; break;
+        }
+        return Long.parseLong(unit == 1 ? v : v.substring(0, v.length() - 1)) * unit;
+    }
+
+    // How many entries make roughly 'size' bytes with these settings, measured on a small sample.
+    long entriesFor(long size) {
+        prepare(CHUNK);
+        Chunk c = new Chunk();
+        c.generate(0, Math.min(CHUNK, 1 << 14), 1 << 14);
+        return Math.max(1, (long) (size / ((double) c.len / c.records)));
+    }
+
+    //                                                                 Write the whole file (replacing 'out')
+    void write(File out) throws IOException {
+        prepare(entries);
+        bytes = sessions = records = damaged = 0;
+        long chunks = (entries + CHUNK - 1) / CHUNK;
+        ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+            Thread t = new Thread(r, "log-generator");
+            t.setDaemon(true);
+            return t;
+        });
+        try (RandomAccessFile raf = new RandomAccessFile(out, "rw"); FileChannel ch = raf.getChannel()) {
+            ch.truncate(0);
+            // Chunks are generated ahead (at most 2 per thread in memory) and written in order.
+            ArrayDeque<Future<Chunk>> pending = new ArrayDeque<>();
+            long next = 0;
+            while (next < chunks || !pending.isEmpty()) {
+                while (next < chunks && pending.size() < 2 * threads) {
+                    long first = next++ * CHUNK;
+                    int n = (int) Math.min(CHUNK, entries - first);
+                    pending.add(pool.submit(() -> {
+                        Chunk c = new Chunk();
+                        c.generate(first, n, entries);
+                        return c;
+                    }));
+                }
+                Chunk c = pending.poll().get();
+                ByteBuffer buf = ByteBuffer.wrap(c.buf, 0, c.len);
+                while (buf.hasRemaining()) ch.write(buf);
+                bytes += c.len;
+                sessions += c.sessions;
+                records += c.records;
+                damaged += c.damaged;
+            }
+        } catch (InterruptedException ex) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted", ex);
+        } catch (ExecutionException ex) {
+            throw new IOException("generating the log failed", ex.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private void prepare(long total) {
+        cdf = new double[users];
+        names = new byte[users][];
+        nameCrcs = new int[users];
+        CRC32 crc = new CRC32();
+        double sum = 0;
+        for (int i = 0; i < users; i++) {
+            sum += 1 / Math.pow(i + 1, skew);
+            cdf[i] = sum;
+            names[i] = ("user" + i).getBytes(CS);
+            crc.reset();
+            crc.update(names[i]);
+            nameCrcs[i] = (int) crc.getValue();
+        }
+        categories = new byte[CATEGORIES.length][];
+        for (int i = 0; i < CATEGORIES.length; i++) categories[i] = CATEGORIES[i].getBytes(CS);
+        lastDay = LocalDate.now().toEpochDay();
+    }
+
+    private int pickUser(SplittableRandom rnd) {
+        double x = rnd.nextDouble() * cdf[users - 1];
+        int lo = 0, hi = users - 1;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (cdf[mid] < x) lo = mid + 1; else hi = mid;
+        }
+        return lo;
+    }
+
+    //                                                                 One chunk: entries [first, first + n) of 'total'
+    private final class Chunk {
+        byte[] buf = new byte[1 << 16];
+        int len;
+        long sessions, records, damaged;
+        private final CRC32 crc = new CRC32();
+        private SplittableRandom rnd;
+        private long dateDay = Long.MIN_VALUE;
+        private byte[] date;               // 'dateDay' formatted; consecutive sessions mostly share the day
+
+        void generate(long first, int n, long total) {
+            rnd = new SplittableRandom(seed * 0x9E3779B97F4A7C15L + first);
+            long e = first;
+            long end = first + n;
+            while (e < end) {
+                int size = (int) Math.min(1 + rnd.nextInt(2 * sessionSize), end - e);
+                long day = lastDay - days + 1 + e * days / total; // sessions are saved in date order
+                session(pickUser(rnd), day, size);
+                e += size;
+            }
+        }
+
+        private void session(int user, long day, int size) {
+            sessions++;
+            if (day != dateDay) {
+                date = LocalDate.ofEpochDay(day).toString().getBytes(CS);
+                dateDay = day;
+            }
+            int fav = user % CATEGORIES.length; // most of a user's time goes to one category
+            int start = len;
+            put("=== Session for ");
+            put(names[user]);
+            put(" on ");
+            put(date);
+            put((byte) 'T');
+            two(rnd.nextInt(24)); put((byte) ':'); two(rnd.nextInt(60)); put((byte) ':'); two(rnd.nextInt(60));
+            put(" ===");
+            seal(start, (byte) ' ', 0);
+            if (damage()) len = start + 4 + rnd.nextInt(len - start - 4); // a torn header: the session's lines belong to nobody
+            put(NL);
+            for (int i = 0; i < size; i++) {
+                records++;
+                int c = rnd.nextInt(3) > 0 ? fav : rnd.nextInt(CATEGORIES.length);
+                double r = rnd.nextDouble();
+                int minutes = 1 + (int) (r * r * 300); // mostly short stretches, now and then the full 300
+                start = len;
+                put(date);
+                put((byte) ',');
+                put(categories[c]);
+                put((byte) ',');
+                if (damage() && rnd.nextBoolean()) put("abc"); else num(minutes);
+                put((byte) ',');
+                num(minutes * MULTIPLIER[c]);
+                seal(start, (byte) ',', nameCrcs[user]);
+                if (damage()) spoil(start);
+                put(NL);
+            }
+            put(NL); // blank line to separate sessions
+        }
+
+        private boolean damage() {
+            if (malformed == 0 || rnd.nextDouble() >= malformed) return false;
+            damaged++;
+            return true;
+        }
+
+        // A bad line in place of the record at [start, len): torn off, overwritten with noise, or one flipped byte.
+        private void spoil(int start) {
+            switch (rnd.nextInt(3)) {
+                case 0:
+                    len = start + 1 + rnd.nextInt(len - start - 1);
+                    break;
+                case 1:
+                    len = start;
+                    for (int i = 5 + rnd.nextInt(40); i > 0; i--) put((byte) (' ' + rnd.nextInt(95)));
+                    break;
+                default:
+                    buf[start + rnd.nextInt(len - start)] ^= 1 << rnd.nextInt(7);
+            }
+        }
+
+        // " #crc" / ",#crc" after the line at [start, len), as sealHeader / sealRecord write it.
+        private void seal(int start, byte sep, int userCrc) {
+            if (!checksums) return;
+            crc.reset();
+            crc.update(buf, start, len - start);
+            int v = (int) crc.getValue() ^ userCrc;
+            put(sep);
+            put((byte) '#');
+            for (int shift = 28; shift >= 0; shift -= 4) put(HEX[(v >>> shift) & 0xF]);
+        }
+
+        private void ensure(int more) {
+            if (len + more > buf.length) buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + more));
+        }
+
+        private void put(byte b) {
+            ensure(1);
+            buf[len++] = b;
+        }
+
+        private void put(byte[] b) {
+            ensure(b.length);
+            System.arraycopy(b, 0, buf, len, b.length);
+            len += b.length;
+        }
+
+        private void put(String ascii) {
+            ensure(ascii.length());
+            for (int i = 0; i < ascii.length(); i++) buf[len++] = (byte) ascii.charAt(i);
+        }
+
+        private void two(int v) {
+            put((byte) ('0' + v / 10));
+            put((byte) ('0' + v % 10));
+        }
+
+        private void num(int v) {
+            ensure(11);
+            int from = len;
+            do { buf[len++] = (byte) ('0' + v % 10); v /= 10; } while (v > 0);
+            for (int i = from, j = len - 1; i < j; i++, j--) { byte t = buf[i]; buf[i] = buf[j]; buf[j] = t; }
+        }
+    }
+}
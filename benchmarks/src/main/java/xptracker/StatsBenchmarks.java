@@ -0,0 +1,61 @@
+// StatsBenchmarks
+package xptracker;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+//                                                                 The Log & Stats tab: refreshing the stats text and adding minutes
+// The baseline is the user's saved history from the generated log, so the stats cover the same amount of data
+// as a real session on top of a log that size.
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Djava.awt.headless=true", "-Dxptracker.home=" + BenchLogs.HOME})
+@State(Scope.Thread)
+public class StatsBenchmarks {
+
+    UserTotals baseline;
+    XPTrackerGUI gui;
+
+    @Setup(Level.Trial)
+    public void loadBaseline(BenchLogs logs) throws IOException {
+        XPTrackerGUI probe = new XPTrackerGUI();
+        probe.buildHeadless(BenchLogs.USER);
+        baseline = probe.lookupHistory(BenchLogs.USER, Integer.MIN_VALUE, Integer.MAX_VALUE, null);
+        gui = newSession(baseline);
+    }
+
+    static XPTrackerGUI newSession(UserTotals baseline) {
+        XPTrackerGUI gui = new XPTrackerGUI();
+        gui.buildHeadless(BenchLogs.USER);
+        gui.applyBaseline(baseline.copy(), false);
+        gui.addMinutesFromTimer("CODING", 45); // so the session part of the stats isn't empty
+        return gui;
+    }
+
+    @Benchmark
+    public void updateStatsArea() {
+        gui.updateStatsArea();
+    }
+
+    // Stats refresh is O(entries in the session), so every call gets the same one-entry session; otherwise the
+    // session would grow all iteration long and the score would depend on the iteration length.
+    @State(Scope.Thread)
+    public static class Session {
+        XPTrackerGUI gui;
+
+        @Setup(Level.Invocation)
+        public void reset(StatsBenchmarks bench) {
+            gui = newSession(bench.baseline);
+        }
+    }
+
+    // 450 minutes: two entries (300 + 150) and one stats refresh.
+    @Benchmark
+    public void addMinutesFromTimer(Session session) {
+        session.gui.addMinutesFromTimer("STUDY", 450);
+    }
+}